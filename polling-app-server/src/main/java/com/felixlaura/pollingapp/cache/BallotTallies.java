@@ -0,0 +1,284 @@
+package com.felixlaura.pollingapp.cache;
+
+import com.felixlaura.pollingapp.model.Choice;
+import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.model.PollType;
+import com.felixlaura.pollingapp.util.InstantRunoff;
+import com.felixlaura.pollingapp.util.LongLongMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Results of the MULTIPLE and RANKED polls, kept in memory and updated by the BALLOT_CAST events of the cache bus
+ * so a poll read does not go over its ballots again. A poll's ballots are read from the ballots table on first use,
+ * then each new ballot adds its choices to the approval counts or to the InstantRunoff count.
+ * At most app.ballots.maxPolls polls are held, the least recently used are dropped.
+ */
+@Component
+public class BallotTallies implements CacheEventListener {
+
+    private static final String BALLOTS_OF_POLL_SQL = "SELECT user_id, choice_ids FROM ballots WHERE poll_id = ?";
+
+    //Access ordered, so iteration starts with the least recently used poll
+    private final LinkedHashMap<Long, Tally> tallies = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.ballots.maxPolls}")
+    private int maxPolls;
+
+    @PostConstruct
+    void subscribe() {
+        cacheBus.subscribe(this);
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case BALLOT_CAST:
+                Tally tally;
+                synchronized (this) {
+                    tally = tallies.get(event.getPollId());
+                }
+                //Polls that are not held read the ballot with the others on first use
+                if (tally != null) {
+                    tally.add(event.getUserId(), event.getChoiceIds());
+                }
+                break;
+            case INVALIDATE_ALL:
+                synchronized (this) {
+                    tallies.clear();
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Current result of a MULTIPLE or RANKED poll, with the choices of the given user (null for none).
+     */
+    public BallotResult getResult(Poll poll, Long userId) {
+        Tally tally;
+        synchronized (this) {
+            tally = tallies.get(poll.getId());
+            if (tally == null) {
+                tally = new Tally(poll);
+                tallies.put(poll.getId(), tally);
+                if (tallies.size() > maxPolls) {
+                    Map.Entry<Long, Tally> eldest = tallies.entrySet().iterator().next();
+                    tallies.remove(eldest.getKey());
+                }
+            }
+        }
+        tally.load(poll.getId());
+        return tally.result(userId);
+    }
+
+    /**
+     * Counts of one poll. Candidates are the poll's choices in id order, a user's ballot is held as its key:
+     * the bit set of its candidates for MULTIPLE polls, the InstantRunoff ranking for RANKED polls.
+     */
+    private class Tally {
+
+        private final PollType type;
+        private final long[] choiceIds;
+
+        private final Object loadLock = new Object();
+        private volatile boolean loaded;
+
+        //Ballot key per user, a user has one ballot per poll so repeated events are ignored
+        private final LongLongMap ballots = new LongLongMap(64);
+        private final long[] approvals;
+        private final InstantRunoff runoff;
+
+        private Tally(Poll poll) {
+            this.type = poll.getType();
+            this.choiceIds = poll.getChoices().stream().mapToLong(Choice::getId).sorted().toArray();
+            this.approvals = new long[choiceIds.length];
+            this.runoff = type == PollType.RANKED ? new InstantRunoff(choiceIds.length) : null;
+        }
+
+        //Ballots arriving meanwhile are added by the events, the user key keeps them from being counted twice
+        void load(long pollId) {
+            if (loaded) {
+                return;
+            }
+            synchronized (loadLock) {
+                if (loaded) {
+                    return;
+                }
+                List<Object[]> rows = new ArrayList<>();
+                jdbcTemplate.query(BALLOTS_OF_POLL_SQL, (RowCallbackHandler) rs ->
+                        rows.add(new Object[]{rs.getLong(1), rs.getString(2)}), pollId);
+                synchronized (this) {
+                    for (Object[] row : rows) {
+                        add((Long) row[0], parseChoiceIds((String) row[1]));
+                    }
+                    loaded = true;
+                }
+            }
+        }
+
+        synchronized void add(long userId, long[] ballot) {
+            if (ballots.containsKey(userId)) {
+                return;
+            }
+            int[] candidates = new int[ballot.length];
+            for (int i = 0; i < ballot.length; i++) {
+                candidates[i] = Arrays.binarySearch(choiceIds, ballot[i]);
+                if (candidates[i] < 0) {
+                    return; //not a choice of this poll
+                }
+            }
+            long key;
+            if (type == PollType.RANKED) {
+                key = InstantRunoff.rankingOf(candidates);
+                runoff.add(key);
+            } else {
+                key = 0;
+                for (int candidate : candidates) {
+                    key |= 1L << candidate;
+                    approvals[candidate]++;
+                }
+            }
+            ballots.put(userId, key);
+        }
+
+        synchronized BallotResult result(Long userId) {
+            LongLongMap voteCounts = new LongLongMap(choiceIds.length);
+            List<BallotResult.Round> rounds = null;
+            Long winner = null;
+            if (type == PollType.RANKED) {
+                rounds = new ArrayList<>(runoff.getRounds());
+                for (int round = 0; round < runoff.getRounds(); round++) {
+                    LongLongMap roundCounts = new LongLongMap(choiceIds.length);
+                    for (int candidate = 0; candidate < choiceIds.length; candidate++) {
+                        if (runoff.isContinuing(round, candidate)) {
+                            roundCounts.put(choiceIds[candidate], runoff.getVotes(round, candidate));
+                        }
+                    }
+                    int eliminated = runoff.getEliminated(round);
+                    rounds.add(new BallotResult.Round(roundCounts, eliminated >= 0 ? choiceIds[eliminated] : null,
+                            runoff.getExhausted(round)));
+                }
+                //Choices show their first preferences
+                for (int candidate = 0; candidate < choiceIds.length; candidate++) {
+                    voteCounts.put(choiceIds[candidate], runoff.getRounds() > 0 ? runoff.getVotes(0, candidate) : 0);
+                }
+                winner = runoff.getWinner() >= 0 ? choiceIds[runoff.getWinner()] : null;
+            } else {
+                for (int candidate = 0; candidate < choiceIds.length; candidate++) {
+                    voteCounts.put(choiceIds[candidate], approvals[candidate]);
+                }
+            }
+
+            List<Long> selected = null;
+            if (userId != null && ballots.containsKey(userId)) {
+                selected = choicesOf(ballots.get(userId, 0));
+            }
+            return new BallotResult(voteCounts, ballots.size(), winner, rounds, selected);
+        }
+
+        private List<Long> choicesOf(long key) {
+            List<Long> choices = new ArrayList<>();
+            if (type == PollType.RANKED) {
+                for (; key != 0; key >>>= 4) {
+                    choices.add(choiceIds[(int) (key & 0xF) - 1]);
+                }
+            } else {
+                for (int candidate = 0; candidate < choiceIds.length; candidate++) {
+                    if ((key & (1L << candidate)) != 0) {
+                        choices.add(choiceIds[candidate]);
+                    }
+                }
+            }
+            return choices;
+        }
+    }
+
+    private static long[] parseChoiceIds(String choiceIds) {
+        return Arrays.stream(choiceIds.split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    /**
+     * Result of a MULTIPLE or RANKED poll: votes per choice id (approvals, or first preferences for RANKED),
+     * the number of ballots, and for RANKED polls the winner and the counts of every runoff round.
+     */
+    public static class BallotResult {
+
+        private final LongLongMap voteCounts;
+        private final long ballots;
+        private final Long winner;
+        private final List<Round> rounds;
+        private final List<Long> selectedChoices;
+
+        private BallotResult(LongLongMap voteCounts, long ballots, Long winner, List<Round> rounds, List<Long> selectedChoices) {
+            this.voteCounts = voteCounts;
+            this.ballots = ballots;
+            this.winner = winner;
+            this.rounds = rounds;
+            this.selectedChoices = selectedChoices;
+        }
+
+        public LongLongMap getVoteCounts() {
+            return voteCounts;
+        }
+
+        public long getBallots() {
+            return ballots;
+        }
+
+        public Long getWinner() {
+            return winner;
+        }
+
+        public List<Round> getRounds() {
+            return rounds;
+        }
+
+        public List<Long> getSelectedChoices() {
+            return selectedChoices;
+        }
+
+        //Votes of the continuing choices in one runoff round, eliminatedChoice is null for the last round
+        public static class Round {
+
+            private final LongLongMap voteCounts;
+            private final Long eliminatedChoice;
+            private final long exhaustedBallots;
+
+            private Round(LongLongMap voteCounts, Long eliminatedChoice, long exhaustedBallots) {
+                this.voteCounts = voteCounts;
+                this.eliminatedChoice = eliminatedChoice;
+                this.exhaustedBallots = exhaustedBallots;
+            }
+
+            public LongLongMap getVoteCounts() {
+                return voteCounts;
+            }
+
+            public Long getEliminatedChoice() {
+                return eliminatedChoice;
+            }
+
+            public long getExhaustedBallots() {
+                return exhaustedBallots;
+            }
+        }
+    }
+}
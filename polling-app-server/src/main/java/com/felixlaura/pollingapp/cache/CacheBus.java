@@ -0,0 +1,144 @@
+package com.felixlaura.pollingapp.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * CacheBus keeps in-process caches coherent across nodes.
+ * Write paths publish a CacheEvent once their change is committed. Local listeners see it right away,
+ * other nodes receive it through the CacheBusTransport in batches flushed at least every
+ * app.cacheBus.maxStalenessMs, or sooner when app.cacheBus.batchSize events are waiting.
+ * If the queue ever grows past app.cacheBus.maxQueueSize, or a batch cannot be sent, the queued deltas are dropped
+ * and an INVALIDATE_ALL event is queued instead (and retried with the next flush), so remote caches never keep
+ * stale entries without being told.
+ */
+@Component
+public class CacheBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheBus.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final List<CacheEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final ConcurrentLinkedQueue<CacheEvent> queue = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger queueSize = new AtomicInteger();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-bus-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    private CacheBusTransport transport;
+
+    @Value("${app.cacheBus.maxStalenessMs}")
+    private long maxStalenessMs;
+
+    @Value("${app.cacheBus.batchSize}")
+    private int batchSize;
+
+    @Value("${app.cacheBus.maxQueueSize}")
+    private int maxQueueSize;
+
+    @PostConstruct
+    void start() {
+        transport.start(this::receive);
+        flusher.scheduleWithFixedDelay(this::flush, maxStalenessMs, maxStalenessMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        flusher.shutdown();
+        flush();
+        transport.stop();
+    }
+
+    public void subscribe(CacheEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void publish(CacheEvent event) {
+        CacheEvent stamped = event.withOriginNode(nodeId);
+        notifyListeners(stamped);
+
+        queue.add(stamped);
+        int size = queueSize.incrementAndGet();
+        if (size > maxQueueSize) {
+            int dropped = invalidateRemoteCaches();
+            logger.warn("Cache bus queue overflow, dropped {} events and invalidating remote caches", dropped);
+        } else if (size >= batchSize) {
+            flusher.execute(this::flush);
+        }
+    }
+
+    //Replaces the queued deltas with one INVALIDATE_ALL, returns how many events were dropped
+    private int invalidateRemoteCaches() {
+        int dropped = 0;
+        while (queue.poll() != null) {
+            queueSize.decrementAndGet();
+            dropped++;
+        }
+        queue.add(CacheEvent.invalidateAll().withOriginNode(nodeId));
+        queueSize.incrementAndGet();
+        return dropped;
+    }
+
+    synchronized void flush() {
+        while (!queue.isEmpty()) {
+            List<CacheEvent> batch = new ArrayList<>(batchSize);
+            CacheEvent event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                queueSize.decrementAndGet();
+                batch.add(event);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transport.send(batch);
+            } catch (RuntimeException ex) {
+                //The other nodes missed these deltas, they are told to drop everything once the transport is back
+                int dropped = invalidateRemoteCaches();
+                logger.error("Could not send {} cache events, dropped them and {} queued ones, invalidating remote caches "
+                        + "with the next flush", batch.size(), dropped, ex);
+                return;
+            }
+        }
+    }
+
+    private void receive(List<CacheEvent> batch) {
+        for (CacheEvent event : batch) {
+            if (!nodeId.equals(event.getOriginNode())) {
+                notifyListeners(event);
+            }
+        }
+    }
+
+    private void notifyListeners(CacheEvent event) {
+        for (CacheEventListener listener : listeners) {
+            try {
+                listener.onEvent(event);
+            } catch (RuntimeException ex) {
+                logger.error("Cache listener failed on {} event", event.getType(), ex);
+            }
+        }
+    }
+}
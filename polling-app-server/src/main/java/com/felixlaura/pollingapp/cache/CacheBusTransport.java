@@ -0,0 +1,19 @@
+package com.felixlaura.pollingapp.cache;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Transport SPI used by CacheBus to reach the other nodes.
+ * Declare a bean implementing this interface (on top of Kafka, Redis pub/sub, JMS...) and set
+ * app.cacheBus.transport to its name to replace the in-JVM LoopbackCacheBusTransport. Implementations must deliver every batch to all other nodes,
+ * in order per sender; the bus itself ignores batches coming back from its own node.
+ */
+public interface CacheBusTransport {
+
+    void start(Consumer<List<CacheEvent>> receiver);
+
+    void send(List<CacheEvent> batch);
+
+    void stop();
+}
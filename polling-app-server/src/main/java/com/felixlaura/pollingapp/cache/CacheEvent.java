@@ -0,0 +1,131 @@
+package com.felixlaura.pollingapp.cache;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A change that in-process caches on every node must apply: a vote delta, a new poll or a changed user.
+ * Events are immutable and serializable so transports can ship them as they are.
+ */
+public class CacheEvent implements Serializable {
+
+    public enum Type {
+        VOTE_CAST,
+        //A ballot of a MULTIPLE or RANKED poll, choiceId is its first choice
+        BALLOT_CAST,
+        POLL_CREATED,
+        USER_CHANGED,
+        POLL_ARCHIVED,
+        //Sent when a node had to drop queued events, receivers must clear everything they cache
+        INVALIDATE_ALL
+    }
+
+    private final Type type;
+    private final Long voteId;
+    private final Long pollId;
+    private final Long choiceId;
+    private final Long userId;
+    private final long delta;
+    private final long timestamp;
+    private final long[] choiceIds;
+    //Opening (null when open right away) and expiry of a POLL_CREATED poll, in epoch millis
+    private final Long startsAt;
+    private final Long expiresAt;
+    private final String originNode;
+
+    private CacheEvent(Type type, Long voteId, Long pollId, Long choiceId, Long userId, long delta, long timestamp) {
+        this(type, voteId, pollId, choiceId, userId, delta, timestamp, null, null, null, null);
+    }
+
+    private CacheEvent(Type type, Long voteId, Long pollId, Long choiceId, Long userId, long delta, long timestamp,
+                       long[] choiceIds, Long startsAt, Long expiresAt, String originNode) {
+        this.type = type;
+        this.voteId = voteId;
+        this.pollId = pollId;
+        this.choiceId = choiceId;
+        this.userId = userId;
+        this.delta = delta;
+        this.timestamp = timestamp;
+        this.choiceIds = choiceIds;
+        this.startsAt = startsAt;
+        this.expiresAt = expiresAt;
+        this.originNode = originNode;
+    }
+
+    public static CacheEvent voteCast(Long voteId, Long pollId, Long choiceId, Long userId) {
+        return new CacheEvent(Type.VOTE_CAST, voteId, pollId, choiceId, userId, 1, System.currentTimeMillis());
+    }
+
+    public static CacheEvent ballotCast(Long ballotId, Long pollId, Long userId, long[] choiceIds) {
+        return new CacheEvent(Type.BALLOT_CAST, ballotId, pollId, choiceIds[0], userId, 1, System.currentTimeMillis(),
+                choiceIds.clone(), null, null, null);
+    }
+
+    public static CacheEvent pollCreated(Long pollId, Long creatorId, Instant startDateTime, Instant expirationDateTime) {
+        return new CacheEvent(Type.POLL_CREATED, null, pollId, null, creatorId, 0, System.currentTimeMillis(), null,
+                startDateTime != null ? startDateTime.toEpochMilli() : null, expirationDateTime.toEpochMilli(), null);
+    }
+
+    public static CacheEvent userChanged(Long userId) {
+        return new CacheEvent(Type.USER_CHANGED, null, null, null, userId, 0, System.currentTimeMillis());
+    }
+
+    public static CacheEvent pollArchived(Long pollId) {
+        return new CacheEvent(Type.POLL_ARCHIVED, null, pollId, null, null, 0, System.currentTimeMillis());
+    }
+
+    public static CacheEvent invalidateAll() {
+        return new CacheEvent(Type.INVALIDATE_ALL, null, null, null, null, 0, System.currentTimeMillis());
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getVoteId() {
+        return voteId;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public Long getChoiceId() {
+        return choiceId;
+    }
+
+    //Choices of a BALLOT_CAST in ballot order, null for the other events
+    public long[] getChoiceIds() {
+        return choiceIds != null ? choiceIds.clone() : null;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public long getDelta() {
+        return delta;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    //Start of a POLL_CREATED poll scheduled for later, null otherwise
+    public Instant getStartDateTime() {
+        return startsAt != null ? Instant.ofEpochMilli(startsAt) : null;
+    }
+
+    public Instant getExpirationDateTime() {
+        return expiresAt != null ? Instant.ofEpochMilli(expiresAt) : null;
+    }
+
+    public String getOriginNode() {
+        return originNode;
+    }
+
+    //Copy of this event stamped with the node publishing it
+    CacheEvent withOriginNode(String originNode) {
+        return new CacheEvent(type, voteId, pollId, choiceId, userId, delta, timestamp, choiceIds, startsAt, expiresAt, originNode);
+    }
+}
@@ -0,0 +1,10 @@
+package com.felixlaura.pollingapp.cache;
+
+/**
+ * Implemented by in-process caches that must follow changes made on this node or any other node.
+ */
+@FunctionalInterface
+public interface CacheEventListener {
+
+    void onEvent(CacheEvent event);
+}
@@ -0,0 +1,150 @@
+package com.felixlaura.pollingapp.cache;
+
+import com.felixlaura.pollingapp.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Listing totals that are counted once and then served from memory.
+ * A total older than app.totals.refreshMs is still returned, and a recount is started in the background.
+ * New polls are added to the totals right away from the POLL_CREATED events, so between two counts the totals
+ * are only off by deleted polls. A count replaces the total by a delta: the increments that arrive while the count
+ * runs are kept on top of it, and concurrent first counts of the same key share one query.
+ */
+@Component
+public class CachedTotals implements CacheEventListener {
+
+    public static final String ALL_POLLS = "polls";
+
+    private static final Logger logger = LoggerFactory.getLogger(CachedTotals.class);
+
+    private final ConcurrentHashMap<String, Total> totals = new ConcurrentHashMap<>();
+
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cached-totals");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private SingleFlight<String, Long> firstCounts;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.singleFlight.timeoutMs}")
+    private long singleFlightTimeoutMs;
+
+    @Value("${app.totals.refreshMs}")
+    private long refreshMs;
+
+    @Value("${app.totals.maxKeys}")
+    private int maxKeys;
+
+    @PostConstruct
+    void subscribe() {
+        firstCounts = new SingleFlight<>("totals", singleFlightTimeoutMs, meterRegistry);
+        cacheBus.subscribe(this);
+    }
+
+    @PreDestroy
+    void stop() {
+        refresher.shutdownNow();
+    }
+
+    public static String pollsCreatedBy(Long userId) {
+        return "polls-created-by-" + userId;
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case POLL_CREATED:
+                increment(ALL_POLLS);
+                if (event.getUserId() != null) {
+                    increment(pollsCreatedBy(event.getUserId()));
+                }
+                break;
+            case INVALIDATE_ALL:
+                totals.clear();
+                break;
+            default:
+                break;
+        }
+    }
+
+    public long get(String key, LongSupplier counter) {
+        Total total = totals.get(key);
+        if (total == null || !total.counted) {
+            return firstCounts.load(key, () -> firstCount(key, counter));
+        }
+
+        if (System.currentTimeMillis() - total.countedAt > refreshMs && total.refreshing.compareAndSet(false, true)) {
+            Total stale = total;
+            refresher.execute(() -> {
+                try {
+                    stale.count(counter);
+                } catch (RuntimeException ex) {
+                    logger.warn("Could not recount {}", key, ex);
+                } finally {
+                    stale.refreshing.set(false);
+                }
+            });
+        }
+        return total.value.get();
+    }
+
+    //The total is in the map before the count runs, so the polls created meanwhile are added to it
+    private long firstCount(String key, LongSupplier counter) {
+        Total total = totals.get(key);
+        if (total == null) {
+            if (totals.size() >= maxKeys) {
+                totals.clear();
+            }
+            total = totals.computeIfAbsent(key, k -> new Total());
+        }
+        if (!total.counted) {
+            total.count(counter);
+        }
+        return total.value.get();
+    }
+
+    private void increment(String key) {
+        Total total = totals.get(key);
+        if (total != null) {
+            total.value.incrementAndGet();
+        }
+    }
+
+    private static class Total {
+        private final AtomicLong value = new AtomicLong();
+        private volatile boolean counted;
+        private volatile long countedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        //Moves the total by the difference between the count and the value it started from,
+        //increments made while the count ran stay on top of it
+        void count(LongSupplier counter) {
+            long before = value.get();
+            long count = counter.getAsLong();
+            value.addAndGet(count - before);
+            countedAt = System.currentTimeMillis();
+            counted = true;
+        }
+    }
+}
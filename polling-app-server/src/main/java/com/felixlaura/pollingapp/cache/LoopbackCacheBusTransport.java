@@ -0,0 +1,37 @@
+package com.felixlaura.pollingapp.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Default transport: delivers batches to every bus started in the same JVM.
+ * A single instance only talks to itself; tests can start several application contexts
+ * in one JVM to simulate a cluster.
+ */
+public class LoopbackCacheBusTransport implements CacheBusTransport {
+
+    private static final List<Consumer<List<CacheEvent>>> receivers = new CopyOnWriteArrayList<>();
+
+    private Consumer<List<CacheEvent>> receiver;
+
+    @Override
+    public void start(Consumer<List<CacheEvent>> receiver) {
+        this.receiver = receiver;
+        receivers.add(receiver);
+    }
+
+    @Override
+    public void send(List<CacheEvent> batch) {
+        for (Consumer<List<CacheEvent>> other : receivers) {
+            if (other != receiver) {
+                other.accept(batch);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        receivers.remove(receiver);
+    }
+}
@@ -0,0 +1,112 @@
+package com.felixlaura.pollingapp.cache;
+
+import com.felixlaura.pollingapp.service.PollLifecycleEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cheap versions of what the GET endpoints return, used as HTTP validators (ETag) so that conditional requests
+ * are answered with 304 without loading anything.
+ * A poll's version moves on every vote, archival or expiry of the poll. The listing version moves on any change
+ * visible in a listing. Versions are event timestamps, bumped by one when two changes share a millisecond.
+ * Polls without a change since this node started share the start time as version, which is later than anything
+ * a client may have seen before. When more than app.httpCache.maxPolls polls are tracked everything is reset
+ * to a new base, so the worst case is one full response per poll.
+ */
+@Component
+public class PollVersions implements CacheEventListener {
+
+    private final ConcurrentHashMap<Long, Long> pollVersions = new ConcurrentHashMap<>();
+
+    //Expiration time of the polls served, lets a 304 carry the same cache headers as the full response
+    private final ConcurrentHashMap<Long, Long> expirations = new ConcurrentHashMap<>();
+
+    private volatile long baseVersion = System.currentTimeMillis();
+
+    private long listingVersion = baseVersion;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Value("${app.httpCache.maxPolls}")
+    private int maxPolls;
+
+    @PostConstruct
+    void subscribe() {
+        cacheBus.subscribe(this);
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case VOTE_CAST:
+            case BALLOT_CAST:
+            case POLL_ARCHIVED:
+                changed(event.getPollId(), event.getTimestamp());
+                break;
+            case POLL_CREATED:
+            case USER_CHANGED:
+                listingChanged(event.getTimestamp());
+                break;
+            case INVALIDATE_ALL:
+                reset();
+                break;
+            default:
+                break;
+        }
+    }
+
+    //Expiry changes isExpired in every response showing the poll
+    @EventListener
+    public void onPollLifecycle(PollLifecycleEvent event) {
+        if (event.getType() == PollLifecycleEvent.Type.EXPIRED) {
+            changed(event.getPollId(), event.getFiredAt().toEpochMilli());
+        }
+    }
+
+    public long pollVersion(Long pollId) {
+        return pollVersions.getOrDefault(pollId, baseVersion);
+    }
+
+    public synchronized long listingVersion() {
+        return listingVersion;
+    }
+
+    public void rememberExpiration(Long pollId, Instant expirationDateTime) {
+        if (expirations.size() < maxPolls) {
+            expirations.put(pollId, expirationDateTime.toEpochMilli());
+        }
+    }
+
+    //False when the poll is still open or was not served by this node yet
+    public boolean isKnownExpired(Long pollId) {
+        Long expiresAt = expirations.get(pollId);
+        return expiresAt != null && expiresAt < System.currentTimeMillis();
+    }
+
+    private void changed(Long pollId, long timestamp) {
+        if (pollVersions.size() >= maxPolls) {
+            reset();
+        }
+        pollVersions.merge(pollId, Math.max(timestamp, baseVersion + 1), (previous, next) -> Math.max(next, previous + 1));
+        listingChanged(timestamp);
+    }
+
+    private synchronized void listingChanged(long timestamp) {
+        listingVersion = Math.max(timestamp, listingVersion + 1);
+    }
+
+    private synchronized void reset() {
+        long now = Math.max(System.currentTimeMillis(), listingVersion + 1);
+        baseVersion = now;
+        listingVersion = now;
+        pollVersions.clear();
+        expirations.clear();
+    }
+}
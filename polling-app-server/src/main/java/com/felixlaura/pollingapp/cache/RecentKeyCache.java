@@ -0,0 +1,54 @@
+package com.felixlaura.pollingapp.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently seen keys for a limited time, at most maxKeys of them.
+ * Keys are kept in insertion order, so the oldest ones are the first to expire or to be evicted.
+ */
+public class RecentKeyCache<V> {
+
+    private final LinkedHashMap<String, Entry<V>> entries = new LinkedHashMap<>();
+    private final int maxKeys;
+    private final long ttlMillis;
+
+    public RecentKeyCache(int maxKeys, long ttlMillis) {
+        this.maxKeys = maxKeys;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public synchronized V get(String key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.expiresAt < System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.value;
+    }
+
+    public synchronized void put(String key, V value) {
+        long now = System.currentTimeMillis();
+        entries.remove(key);
+        entries.put(key, new Entry<>(value, now + ttlMillis));
+
+        Iterator<Map.Entry<String, Entry<V>>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry<V>> eldest = iterator.next();
+            if (entries.size() <= maxKeys && eldest.getValue().expiresAt >= now) {
+                break;
+            }
+            iterator.remove();
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
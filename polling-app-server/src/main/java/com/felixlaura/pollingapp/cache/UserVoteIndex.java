@@ -0,0 +1,223 @@
+package com.felixlaura.pollingapp.cache;
+
+import com.felixlaura.pollingapp.model.VotedChoice;
+import com.felixlaura.pollingapp.repository.VoteRepository;
+import com.felixlaura.pollingapp.util.LongLongMap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * In-memory index of the votes of recently active users: which choice a user selected in a poll,
+ * and the polls a user voted in, in voting order. It answers selectedChoice on every list page and
+ * the /users/{username}/votes pages without going to the database.
+ *
+ * The votes of a user are loaded on first use (live, archived and ballots) and then follow the VOTE_CAST and
+ * BALLOT_CAST events of the cache bus. A ballot is indexed with its first choice.
+ * They are kept in primitive arrays, about 24 bytes per vote. Once more than app.voteIndex.maxEntries votes are held
+ * the least recently used users are dropped.
+ */
+@Component
+public class UserVoteIndex implements CacheEventListener {
+
+    //Access ordered, so iteration starts with the least recently used user
+    private final LinkedHashMap<Long, UserVotes> users = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long entries;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Value("${app.voteIndex.maxEntries}")
+    private long maxEntries;
+
+    @PostConstruct
+    void subscribe() {
+        cacheBus.subscribe(this);
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case VOTE_CAST:
+            case BALLOT_CAST:
+                UserVotes votes;
+                synchronized (this) {
+                    votes = users.get(event.getUserId());
+                }
+                //Users that are not indexed load the vote with the rest of their votes on first use
+                if (votes != null && votes.add(event.getPollId(), event.getChoiceId())) {
+                    grew(event.getUserId(), votes, 1);
+                }
+                break;
+            case USER_CHANGED:
+                synchronized (this) {
+                    UserVotes removed = users.remove(event.getUserId());
+                    if (removed != null) {
+                        entries -= removed.size();
+                    }
+                }
+                break;
+            case INVALIDATE_ALL:
+                synchronized (this) {
+                    users.clear();
+                    entries = 0;
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    //Choice selected by the user in each of the given polls, polls without a vote are left out
+    public LongLongMap getVotedChoices(Long userId, List<Long> pollIds) {
+        return votesOf(userId).choicesOf(pollIds);
+    }
+
+    public long countVotes(Long userId) {
+        return votesOf(userId).size();
+    }
+
+    //Polls voted by the user, oldest vote first
+    public List<Long> getVotedPollIds(Long userId, long offset, int limit) {
+        return votesOf(userId).votedPollIds(offset, limit);
+    }
+
+    //Loads the votes of the user ahead of its first request, see WarmUpService
+    public void preload(Long userId) {
+        votesOf(userId);
+    }
+
+    private UserVotes votesOf(Long userId) {
+        UserVotes votes;
+        synchronized (this) {
+            votes = users.computeIfAbsent(userId, id -> new UserVotes());
+        }
+        //Loading runs outside the index lock, concurrent votes of this user wait for it and are then merged
+        int loaded = votes.load(() -> voteRepository.findVotedChoicesByUserId(userId));
+        if (loaded > 0) {
+            grew(userId, votes, loaded);
+        }
+        return votes;
+    }
+
+    private synchronized void grew(Long userId, UserVotes votes, int added) {
+        if (users.get(userId) != votes) {
+            return; //evicted in the meantime, its votes are no longer counted
+        }
+        entries += added;
+        Iterator<UserVotes> iterator = users.values().iterator();
+        while (entries > maxEntries && users.size() > 1 && iterator.hasNext()) {
+            UserVotes eldest = iterator.next();
+            iterator.remove();
+            entries -= eldest.size();
+        }
+    }
+
+    private interface Loader {
+        List<VotedChoice> load();
+    }
+
+    private static class UserVotes {
+
+        private static final long[] EMPTY = new long[0];
+
+        private boolean loaded;
+        private int size;
+
+        //Sorted by poll id for lookups, choiceIds is parallel to pollIds
+        private long[] pollIds = EMPTY;
+        private long[] choiceIds = EMPTY;
+
+        //Poll ids in voting order, for the voted-by pages
+        private long[] votedOrder = EMPTY;
+
+        synchronized int load(Loader loader) {
+            if (loaded) {
+                return 0;
+            }
+            List<VotedChoice> rows = loader.load();
+            int count = rows.size();
+            votedOrder = new long[count];
+            Integer[] byPollId = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                votedOrder[i] = rows.get(i).getPollId();
+                byPollId[i] = i;
+            }
+            Arrays.sort(byPollId, (a, b) -> Long.compare(votedOrder[a], votedOrder[b]));
+
+            pollIds = new long[count];
+            choiceIds = new long[count];
+            for (int i = 0; i < count; i++) {
+                pollIds[i] = votedOrder[byPollId[i]];
+                choiceIds[i] = rows.get(byPollId[i]).getChoiceId();
+            }
+            size = count;
+            loaded = true;
+            return count;
+        }
+
+        //A vote may already be part of the loaded rows, there is at most one vote per poll and user
+        synchronized boolean add(long pollId, long choiceId) {
+            if (!loaded) {
+                return false;
+            }
+            int position = Arrays.binarySearch(pollIds, 0, size, pollId);
+            if (position >= 0) {
+                return false;
+            }
+            int insertAt = -position - 1;
+            if (size == pollIds.length) {
+                int capacity = Math.max(8, size + (size >> 1));
+                pollIds = Arrays.copyOf(pollIds, capacity);
+                choiceIds = Arrays.copyOf(choiceIds, capacity);
+                votedOrder = Arrays.copyOf(votedOrder, capacity);
+            }
+            System.arraycopy(pollIds, insertAt, pollIds, insertAt + 1, size - insertAt);
+            System.arraycopy(choiceIds, insertAt, choiceIds, insertAt + 1, size - insertAt);
+            pollIds[insertAt] = pollId;
+            choiceIds[insertAt] = choiceId;
+            votedOrder[size] = pollId;
+            size++;
+            return true;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized LongLongMap choicesOf(List<Long> polls) {
+            LongLongMap choices = new LongLongMap(polls.size());
+            for (Long pollId : polls) {
+                int position = Arrays.binarySearch(pollIds, 0, size, pollId);
+                if (position >= 0) {
+                    choices.put(pollId, choiceIds[position]);
+                }
+            }
+            return choices;
+        }
+
+        synchronized List<Long> votedPollIds(long offset, int limit) {
+            if (offset >= size) {
+                return Collections.emptyList();
+            }
+            int end = (int) Math.min(size, offset + limit);
+            List<Long> page = new ArrayList<>(end - (int) offset);
+            for (int i = (int) offset; i < end; i++) {
+                page.add(votedOrder[i]);
+            }
+            return page;
+        }
+    }
+}
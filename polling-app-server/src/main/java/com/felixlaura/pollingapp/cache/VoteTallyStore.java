@@ -0,0 +1,353 @@
+package com.felixlaura.pollingapp.cache;
+
+import com.felixlaura.pollingapp.model.Choice;
+import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.util.LongLongMap;
+import com.felixlaura.pollingapp.util.SnowflakeIdGenerator;
+import com.felixlaura.pollingapp.util.TallyFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Vote count of every choice, kept by each node in a memory-mapped TallyFile so a restart does not
+ * recount every poll from MySQL.
+ *
+ * The file holds the counts of every vote up to a high-water vote id. Every app.tally.advanceMs the
+ * high-water mark moves to the largest Snowflake id of app.tally.settleMs ago, the votes in between are
+ * read by primary key range and added, then the file is checkpointed. Votes newer than the high-water
+ * mark come from the VOTE_CAST events of the cache bus and are held in memory until the mark passes them.
+ * A restarting node only reads the votes cast since its last checkpoint, a node without a file
+ * (or with a file left dirty by a crash) counts the votes table once.
+ *
+ * Until the file is loaded getVoteCounts returns null and PollService counts from the database.
+ */
+@Component
+public class VoteTallyStore implements CacheEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteTallyStore.class);
+
+    private static final String COUNT_VOTES_SQL =
+            "SELECT poll_id, choice_id, COUNT(*) FROM votes WHERE id > ? AND id <= ? GROUP BY poll_id, choice_id";
+
+    private static final String VOTES_BETWEEN_SQL =
+            "SELECT id, poll_id, choice_id FROM votes WHERE id > ? AND id <= ?";
+
+    private final ScheduledExecutorService worker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vote-tallies");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //Votes above the high-water mark by vote id ({pollId, choiceId}), and their count per choice
+    private final TreeMap<Long, long[]> recentVotes = new TreeMap<>();
+    private LongLongMap recentCounts = new LongLongMap(64);
+
+    private TallyFile tallies;
+    private long highWater;
+    private volatile boolean ready;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.tally.enabled}")
+    private boolean enabled;
+
+    @Value("${app.tally.file}")
+    private String file;
+
+    @Value("${app.tally.initialCapacity}")
+    private int initialCapacity;
+
+    @Value("${app.tally.settleMs}")
+    private long settleMs;
+
+    @Value("${app.tally.advanceMs}")
+    private long advanceMs;
+
+    @Value("${app.export.fetchSize}")
+    private int fetchSize;
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        //Subscribed before loading, so no vote falls between the recent votes read and the events
+        cacheBus.subscribe(this);
+        worker.scheduleWithFixedDelay(this::refresh, 0, advanceMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        worker.shutdownNow();
+        synchronized (this) {
+            ready = false;
+            if (tallies != null) {
+                tallies.close();
+                tallies = null;
+            }
+        }
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case VOTE_CAST:
+                if (event.getVoteId() != null) {
+                    addRecentVote(event.getVoteId(), event.getPollId(), event.getChoiceId());
+                }
+                break;
+            case POLL_ARCHIVED:
+                //Archived polls are not read from here, this only frees their slots
+                worker.execute(() -> removePoll(event.getPollId()));
+                break;
+            case INVALIDATE_ALL:
+                //Some events were dropped, read the recent votes again
+                worker.execute(this::loadRecentVotes);
+                break;
+            default:
+                break;
+        }
+    }
+
+    public boolean isReady() {
+        return !enabled || ready;
+    }
+
+    /**
+     * Vote count per choice id of the given polls (choices without votes are left out),
+     * or null when the counts are not loaded yet. Archived polls are skipped, their counts are in Choice.archivedVoteCount.
+     */
+    public LongLongMap getVoteCounts(List<Poll> polls) {
+        if (!ready) {
+            return null;
+        }
+        LongLongMap counts = new LongLongMap(polls.size() * 4);
+        synchronized (this) {
+            if (tallies == null) {
+                return null;
+            }
+            for (Poll poll : polls) {
+                if (poll.isArchived()) {
+                    continue;
+                }
+                for (Choice choice : poll.getChoices()) {
+                    long count = tallies.get(choice.getId()) + recentCounts.get(choice.getId(), 0);
+                    if (count != 0) {
+                        counts.put(choice.getId(), count);
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    private void refresh() {
+        try {
+            if (tallies == null) {
+                load();
+            }
+            advance();
+            if (!ready) {
+                loadRecentVotes();
+                ready = true;
+            }
+        } catch (DataAccessException ex) {
+            //Nothing was applied, the next refresh tries again
+            logger.warn("Could not read new votes for the vote tallies: {}", ex.getMessage());
+        } catch (RuntimeException | IOException ex) {
+            //Counts may be half applied, start over from an empty file
+            logger.error("Vote tallies could not be updated, counting from the database until they are rebuilt", ex);
+            reset();
+        }
+    }
+
+    private void load() throws IOException {
+        long started = System.currentTimeMillis();
+        Path path = Paths.get(file);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+
+        TallyFile opened = TallyFile.open(path, initialCapacity);
+        if (opened.isDirty()) {
+            logger.warn("Vote tally file {} was not checkpointed, counting the votes table again", path);
+            opened.close();
+            Files.delete(path);
+            opened = TallyFile.open(path, initialCapacity);
+        }
+
+        long checkpoint = opened.getHighWater();
+        if (checkpoint == 0) {
+            try {
+                countAllVotes(opened);
+            } catch (RuntimeException | IOException ex) {
+                //Left dirty, the next attempt starts over
+                opened.close();
+                throw ex;
+            }
+        }
+        synchronized (this) {
+            tallies = opened;
+            highWater = opened.getHighWater();
+        }
+
+        if (checkpoint == 0) {
+            logger.info("Counted {} choices from the votes table in {} ms", opened.size(), System.currentTimeMillis() - started);
+        } else {
+            logger.info("Loaded {} choice tallies checkpointed at vote id {}, replaying the votes since then",
+                    opened.size(), checkpoint);
+        }
+    }
+
+    //Written straight to the file, the counts are not read before the checkpoint
+    private void countAllVotes(TallyFile target) throws IOException {
+        long countedUpTo = settledHighWater();
+        target.beginUpdate();
+        try {
+            jdbcTemplate.query(connection -> streaming(connection.prepareStatement(COUNT_VOTES_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), 0, countedUpTo),
+                    (RowCallbackHandler) rs -> add(target, rs.getLong(2), rs.getLong(1), rs.getLong(3)));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        target.checkpoint(countedUpTo);
+    }
+
+    /**
+     * Counts the votes between the high-water mark and the settled mark, then applies the counts and checkpoints
+     * in one step: the file is only dirty while it is written, and no vote is counted both in the file
+     * and in the recent votes. Returns the number of votes added.
+     */
+    private long advance() {
+        long from = highWater;
+        long to = settledHighWater();
+        if (to <= from) {
+            return 0;
+        }
+
+        LongLongMap counts = new LongLongMap(256);
+        LongLongMap pollOfChoice = new LongLongMap(256);
+        jdbcTemplate.query(connection -> streaming(connection.prepareStatement(COUNT_VOTES_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), from, to),
+                (RowCallbackHandler) rs -> {
+                    counts.put(rs.getLong(2), rs.getLong(3));
+                    pollOfChoice.put(rs.getLong(2), rs.getLong(1));
+                });
+
+        long[] added = new long[1];
+        synchronized (this) {
+            tallies.beginUpdate();
+            counts.forEach((choiceId, count) -> {
+                add(tallies, choiceId, pollOfChoice.get(choiceId, 0), count);
+                added[0] += count;
+            });
+            tallies.checkpoint(to);
+            highWater = to;
+
+            //The recent votes up to the mark are in the file now
+            Map<Long, long[]> passed = recentVotes.headMap(to, true);
+            for (long[] vote : passed.values()) {
+                recentCounts.put(vote[1], recentCounts.get(vote[1], 0) - 1);
+            }
+            passed.clear();
+            if (recentVotes.isEmpty() && recentCounts.size() > 1024) {
+                recentCounts = new LongLongMap(64);
+            }
+        }
+        if (!ready) {
+            logger.info("Added the {} votes cast since the vote tally checkpoint", added[0]);
+        }
+        return added[0];
+    }
+
+    //Votes above the high-water mark, the ones already known from events are not counted twice
+    private void loadRecentVotes() {
+        long from;
+        synchronized (this) {
+            from = highWater;
+        }
+        jdbcTemplate.query(connection -> streaming(connection.prepareStatement(VOTES_BETWEEN_SQL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), from, Long.MAX_VALUE),
+                (RowCallbackHandler) rs -> addRecentVote(rs.getLong(1), rs.getLong(2), rs.getLong(3)));
+    }
+
+    private synchronized void addRecentVote(long voteId, long pollId, long choiceId) {
+        //Votes up to the high-water mark are in the file already
+        if (voteId > highWater && !recentVotes.containsKey(voteId)) {
+            recentVotes.put(voteId, new long[]{pollId, choiceId});
+            recentCounts.put(choiceId, recentCounts.get(choiceId, 0) + 1);
+        }
+    }
+
+    private synchronized void removePoll(long pollId) {
+        if (tallies == null) {
+            return;
+        }
+        tallies.beginUpdate();
+        tallies.removePoll(pollId);
+        tallies.checkpoint(highWater);
+    }
+
+    private synchronized void reset() {
+        ready = false;
+        if (tallies != null) {
+            tallies.close();
+            tallies = null;
+        }
+        highWater = 0;
+        recentVotes.clear();
+        recentCounts = new LongLongMap(64);
+        try {
+            Files.deleteIfExists(Paths.get(file));
+        } catch (IOException ex) {
+            logger.error("Could not delete the vote tally file {}", file, ex);
+        }
+    }
+
+    private long settledHighWater() {
+        return SnowflakeIdGenerator.maxIdAt(System.currentTimeMillis() - settleMs);
+    }
+
+    private PreparedStatement streaming(PreparedStatement statement, long... args) throws SQLException {
+        statement.setFetchSize(fetchSize);
+        for (int i = 0; i < args.length; i++) {
+            statement.setLong(i + 1, args[i]);
+        }
+        return statement;
+    }
+
+    private static void add(TallyFile target, long choiceId, long pollId, long delta) {
+        try {
+            target.add(choiceId, pollId, delta);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.felixlaura.pollingapp.cache;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Vote counts of one poll per minute and per hour, kept in two fixed size ring buffers.
+ * A slot is reused as soon as the ring wraps around, so memory per poll is bounded by the number of slots
+ * whatever the number of votes. Buckets changed since the last flush are tracked so that only those are persisted.
+ */
+public class VoteTimeline {
+
+    public static final long MINUTE_MILLIS = 60_000L;
+    public static final long HOUR_MILLIS = 60 * MINUTE_MILLIS;
+
+    private final Ring minutes;
+    private final Ring hours;
+    private final Instant expiresAt;
+    private final Long createdBy;
+
+    public VoteTimeline(int minuteSlots, int hourSlots, Instant expiresAt, Long createdBy) {
+        this.minutes = new Ring(minuteSlots, MINUTE_MILLIS);
+        this.hours = new Ring(hourSlots, HOUR_MILLIS);
+        this.expiresAt = expiresAt;
+        this.createdBy = createdBy;
+    }
+
+    public synchronized void record(long timestampMillis, long delta) {
+        minutes.add(timestampMillis / MINUTE_MILLIS, delta, true);
+        hours.add(timestampMillis / HOUR_MILLIS, delta, true);
+    }
+
+    //Used when loading persisted buckets, does not mark them as changed
+    public synchronized void restoreMinute(long bucketStartMillis, long count) {
+        minutes.add(bucketStartMillis / MINUTE_MILLIS, count, false);
+    }
+
+    public synchronized void restoreHour(long bucketStartMillis, long count) {
+        hours.add(bucketStartMillis / HOUR_MILLIS, count, false);
+    }
+
+    public synchronized List<Bucket> minuteBuckets() {
+        return minutes.buckets(false);
+    }
+
+    public synchronized List<Bucket> hourBuckets() {
+        return hours.buckets(false);
+    }
+
+    //Returns the buckets changed since the previous call
+    public synchronized List<Bucket> drainChangedMinutes() {
+        return minutes.buckets(true);
+    }
+
+    public synchronized List<Bucket> drainChangedHours() {
+        return hours.buckets(true);
+    }
+
+    public synchronized boolean hasChanges() {
+        return !minutes.changed.isEmpty() || !hours.changed.isEmpty();
+    }
+
+    //Creator of the poll, the only user besides admins allowed to read the timeline
+    public Long getCreatedBy() {
+        return createdBy;
+    }
+
+    public Instant getExpiresAt() {
+        return expiresAt;
+    }
+
+    public static class Bucket {
+        private final Instant start;
+        private final long votes;
+
+        public Bucket(Instant start, long votes) {
+            this.start = start;
+            this.votes = votes;
+        }
+
+        public Instant getStart() {
+            return start;
+        }
+
+        public long getVotes() {
+            return votes;
+        }
+    }
+
+    private static class Ring {
+        private final long[] keys;
+        private final long[] counts;
+        private final long unitMillis;
+        private final Set<Long> changed = new HashSet<>();
+        private long newestKey;
+
+        private Ring(int slots, long unitMillis) {
+            this.keys = new long[slots];
+            this.counts = new long[slots];
+            this.unitMillis = unitMillis;
+        }
+
+        private void add(long key, long delta, boolean markChanged) {
+            if (key <= newestKey - keys.length) {
+                return; //older than the window the ring covers
+            }
+            int slot = (int) (key % keys.length);
+            if (keys[slot] != key) {
+                changed.remove(keys[slot]);
+                keys[slot] = key;
+                counts[slot] = 0;
+            }
+            counts[slot] += delta;
+            newestKey = Math.max(newestKey, key);
+            if (markChanged) {
+                changed.add(key);
+            }
+        }
+
+        private List<Bucket> buckets(boolean changedOnly) {
+            List<Bucket> buckets = new ArrayList<>();
+            for (int i = 0; i < keys.length; i++) {
+                long key = keys[i];
+                if (counts[i] == 0 || key <= newestKey - keys.length || (changedOnly && !changed.contains(key))) {
+                    continue;
+                }
+                buckets.add(new Bucket(Instant.ofEpochMilli(key * unitMillis), counts[i]));
+            }
+            if (changedOnly) {
+                changed.clear();
+            }
+            buckets.sort((a, b) -> a.start.compareTo(b.start));
+            return buckets;
+        }
+    }
+}
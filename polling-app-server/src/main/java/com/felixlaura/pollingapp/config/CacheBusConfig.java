@@ -0,0 +1,21 @@
+package com.felixlaura.pollingapp.config;
+
+import com.felixlaura.pollingapp.cache.CacheBusTransport;
+import com.felixlaura.pollingapp.cache.LoopbackCacheBusTransport;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Cache events only travel inside this JVM unless app.cacheBus.transport names another transport,
+ * in which case the deployment declares its own CacheBusTransport bean for the broker it uses.
+ */
+@Configuration
+public class CacheBusConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cacheBus.transport", havingValue = "loopback", matchIfMissing = true)
+    public CacheBusTransport loopbackCacheBusTransport() {
+        return new LoopbackCacheBusTransport();
+    }
+}
@@ -0,0 +1,45 @@
+package com.felixlaura.pollingapp.config;
+
+import com.felixlaura.pollingapp.util.SnowflakeIdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+import jakarta.annotation.PostConstruct;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Gives SnowflakeIdGenerator the node id of this instance, ids generated by two nodes never collide.
+ * The id is app.nodeId when set, otherwise the ordinal a StatefulSet puts at the end of the host name
+ * (polling-app-3 is node 3). Startup fails when neither is available, two nodes falling back to the same
+ * default would generate the same primary keys.
+ */
+@Configuration
+public class IdGeneratorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdGeneratorConfig.class);
+
+    private static final Pattern ORDINAL = Pattern.compile("-(\\d+)$");
+
+    @Value("${app.nodeId:#{null}}")
+    private Long nodeId;
+
+    @Value("${HOSTNAME:}")
+    private String hostname;
+
+    @PostConstruct
+    void init() {
+        if (nodeId == null) {
+            Matcher ordinal = ORDINAL.matcher(hostname);
+            if (!ordinal.find()) {
+                throw new IllegalStateException("Set app.nodeId (0-31, unique per instance) or run with a host name "
+                        + "ending in a StatefulSet ordinal, host name is '" + hostname + "'");
+            }
+            nodeId = Long.parseLong(ordinal.group(1));
+            logger.info("Using node id {} from host name {}", nodeId, hostname);
+        }
+        SnowflakeIdGenerator.setNodeId(nodeId);
+    }
+}
@@ -0,0 +1,29 @@
+package com.felixlaura.pollingapp.config;
+
+import com.felixlaura.pollingapp.util.SnowflakeIdGenerator;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.sql.Connection;
+
+/**
+ * Reflection and proxy hints for the parts of the app that a native image cannot discover by itself.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.AppRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static class AppRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            //QueryCountingDataSource wraps every connection in a JDK proxy
+            hints.proxies().registerJdkProxy(Connection.class);
+            //Hibernate creates the id generator reflectively from @SnowflakeId
+            hints.reflection().registerType(SnowflakeIdGenerator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.felixlaura.pollingapp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the @Scheduled background jobs (vote archival...).
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,38 +1,36 @@
 package com.felixlaura.pollingapp.config;
 
-import com.felixlaura.pollingapp.security.CustomUserDetailsService;
+import com.felixlaura.pollingapp.monitoring.RecordingPasswordEncoder;
 import com.felixlaura.pollingapp.security.JwtAuthenticationEntryPoint;
+import com.felixlaura.pollingapp.security.ConcurrencyLimitFilter;
 import com.felixlaura.pollingapp.security.JwtAuthenticationFilter;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.felixlaura.pollingapp.security.RateLimitFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.config.BeanIds;
-import org.springframework.security.config.annotation.SecurityBuilder;
-import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
-import org.springframework.security.config.annotation.method.configuration.EnableGlobalMethodSecurity;
+import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
+import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
 import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
+
 @Configuration
 @EnableWebSecurity //This enables web security in the project
-@EnableGlobalMethodSecurity(// This annotation enables "method level security" based on annotations.
+@EnableMethodSecurity(// This annotation enables "method level security" based on annotations.
         securedEnabled = true, // it enables the @Secured annotation, selecting what we can protect (controller/svc methods)
-        jsr250Enabled = true, //This enables the @RolesAllowed annotation
-        prePostEnabled = true //This enables based on access control syntax @PreAuthorize and @ PostAuthorize annotations
+        jsr250Enabled = true //This enables the @RolesAllowed annotation
+        // @PreAuthorize and @PostAuthorize annotations are enabled by default
 )
-public class SecurityConfig extends WebSecurityConfigurerAdapter {
-
-    //To authenticate a User or perform many role-based checks, Sepring security need to load user details somehow.
-    //This object implements UserDetailsService interface and provides the implementation for loadUserByUsername() method.
-    @Autowired
-    CustomUserDetailsService customUserDetailsService;
+public class SecurityConfig {
 
     //This class is used to return 401 unathorized error to clients that tr access to protected resource whihtout
     //proper authentication. It implemts Spring Security's AuthenticationEntryPoint interface
@@ -45,56 +43,80 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         return new JwtAuthenticationFilter();
     }
 
-    public void configure(AuthenticationManagerBuilder authenticationManagerBuilder) throws Exception {
-        authenticationManagerBuilder
-                .userDetailsService(customUserDetailsService)
-                .passwordEncoder(passwordEncoder());
+    //This filter rejects abusive clients on sign in, sign up and voting with 429 Too Many Requests.
+    @Bean
+    public RateLimitFilter rateLimitFilter() {
+        return new RateLimitFilter();
+    }
+
+    //The rate limit filter only has to run inside the security chain, after the user is known.
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilterRegistration(RateLimitFilter rateLimitFilter) {
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(rateLimitFilter);
+        registration.setEnabled(false);
+        return registration;
+    }
+
+    //This filter sheds requests over the adaptive concurrency limits with 503 Service Unavailable.
+    @Bean
+    public ConcurrencyLimitFilter concurrencyLimitFilter() {
+        return new ConcurrencyLimitFilter();
+    }
 
+    //Like the rate limit filter it only runs inside the security chain, ahead of the JWT check.
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilterRegistration(ConcurrencyLimitFilter concurrencyLimitFilter) {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration = new FilterRegistrationBean<>(concurrencyLimitFilter);
+        registration.setEnabled(false);
+        return registration;
     }
 
-    @Bean(BeanIds.AUTHENTICATION_MANAGER)
-    public AuthenticationManager authenticationManagerBean() throws Exception {
-        return super.authenticationManagerBean();
+    //The AuthenticationManager is built by Spring Security from our CustomUserDetailsService and PasswordEncoder beans.
+    @Bean
+    public AuthenticationManager authenticationManager(AuthenticationConfiguration authenticationConfiguration) throws Exception {
+        return authenticationConfiguration.getAuthenticationManager();
     }
 
+    //Every BCrypt hash and check is recorded as a JFR event.
     @Bean
     public PasswordEncoder passwordEncoder(){
-        return new BCryptPasswordEncoder();
+        return new RecordingPasswordEncoder(new BCryptPasswordEncoder());
     }
 
-    protected void configure(HttpSecurity http) throws Exception{
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception{
         http
-                .cors()
-                .and()
-                .csrf()
-                .disable()
-                .exceptionHandling()
-                .authenticationEntryPoint(unauthorizedHandler)
-                .and()
-                .sessionManagement()
-                .sessionCreationPolicy(SessionCreationPolicy.STATELESS)
-                .and()
-                .authorizeRequests()
-                .antMatchers("/",
-                        "/favicon.ico",
-                        "/**/*.png",
-                        "/**/*.gif",
-                        "/**/*.svg",
-                        "/**/*.jpg",
-                        "/**/*.html",
-                        "/**/*.css",
-                        "/**/*.js")
-                .permitAll()
-                .antMatchers("/api/auth/**")
-                .permitAll()
-                .antMatchers("/api/user/checkUsernameAvailability", "/api/user/checkEmailAvailability")
-                .permitAll()
-                .antMatchers(HttpMethod.GET, "/api/polls/**", "/api/users/**")
-                .permitAll()
-                .anyRequest()
-                .authenticated();
+                .cors(cors -> {})
+                .csrf(AbstractHttpConfigurer::disable)
+                .exceptionHandling(exceptionHandling -> exceptionHandling
+                        .authenticationEntryPoint(unauthorizedHandler))
+                .sessionManagement(sessionManagement -> sessionManagement
+                        .sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .authorizeHttpRequests(authorize -> authorize
+                        .requestMatchers(antMatcher("/"),
+                                antMatcher("/favicon.ico"),
+                                antMatcher("/**/*.png"),
+                                antMatcher("/**/*.gif"),
+                                antMatcher("/**/*.svg"),
+                                antMatcher("/**/*.jpg"),
+                                antMatcher("/**/*.html"),
+                                antMatcher("/**/*.css"),
+                                antMatcher("/**/*.js"))
+                        .permitAll()
+                        .requestMatchers(antMatcher("/api/auth/**"))
+                        .permitAll()
+                        .requestMatchers(antMatcher("/api/user/checkUsernameAvailability"), antMatcher("/api/user/checkEmailAvailability"))
+                        .permitAll()
+                        .requestMatchers(antMatcher(HttpMethod.GET, "/api/polls/**"), antMatcher(HttpMethod.GET, "/api/users/**"))
+                        .permitAll()
+                        .anyRequest()
+                        .authenticated());
 
         // Add our custom JWT security filter
         http.addFilterBefore(jwtAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+        http.addFilterBefore(concurrencyLimitFilter(), JwtAuthenticationFilter.class);
+        http.addFilterAfter(rateLimitFilter(), JwtAuthenticationFilter.class);
+
+        return http.build();
     }
 }
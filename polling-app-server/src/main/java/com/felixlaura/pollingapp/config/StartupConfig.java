@@ -0,0 +1,65 @@
+package com.felixlaura.pollingapp.config;
+
+import com.felixlaura.pollingapp.cache.CacheEventListener;
+import com.felixlaura.pollingapp.controller.AuthController;
+import com.felixlaura.pollingapp.controller.PollController;
+import com.felixlaura.pollingapp.controller.UserController;
+import com.felixlaura.pollingapp.security.CustomUserDetailsService;
+import com.felixlaura.pollingapp.security.JwtTokenProvider;
+import com.felixlaura.pollingapp.service.PollService;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.List;
+
+/**
+ * With the startup profile (spring.main.lazy-initialization=true) beans are only created when first used.
+ * The beans listed here are still created eagerly: the hot path of every request, so the first requests
+ * do not pay for it, and beans that have to be running without being called (scheduled jobs,
+ * cache listeners, the id generator setup).
+ */
+@Configuration
+public class StartupConfig {
+
+    private static final List<Class<?>> EAGER_BEAN_TYPES = List.of(
+            PollController.class,
+            UserController.class,
+            AuthController.class,
+            PollService.class,
+            JwtTokenProvider.class,
+            CustomUserDetailsService.class,
+            IdGeneratorConfig.class,
+            CacheEventListener.class
+    );
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerBeansExcludeFilter() {
+        return (beanName, beanDefinition, beanType) ->
+                EAGER_BEAN_TYPES.stream().anyMatch(type -> type.isAssignableFrom(beanType)) || hasScheduledMethods(beanType);
+    }
+
+    //With spring.aot.enabled the Flyway beans are fixed when the AOT sources are generated, so spring.flyway.enabled=false
+    //at runtime (the CDS training run of the cds profile, which has no database) only skips the migration
+    @Bean
+    public FlywayMigrationStrategy flywayMigrationStrategy(Environment environment) {
+        return flyway -> {
+            if (environment.getProperty("spring.flyway.enabled", Boolean.class, true)) {
+                flyway.migrate();
+            }
+        };
+    }
+
+    private static boolean hasScheduledMethods(Class<?> beanType) {
+        boolean[] found = new boolean[1];
+        ReflectionUtils.doWithMethods(beanType,
+                method -> found[0] = true,
+                method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+        return found[0];
+    }
+}
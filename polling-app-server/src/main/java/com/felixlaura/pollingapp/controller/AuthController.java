@@ -1,5 +1,7 @@
 package com.felixlaura.pollingapp.controller;
 
+import com.felixlaura.pollingapp.cache.CacheBus;
+import com.felixlaura.pollingapp.cache.CacheEvent;
 import com.felixlaura.pollingapp.exception.AppException;
 import com.felixlaura.pollingapp.model.Role;
 import com.felixlaura.pollingapp.model.RoleName;
@@ -25,7 +27,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import javax.validation.Valid;
+import jakarta.validation.Valid;
 import java.net.URI;
 import java.util.Collections;
 
@@ -48,6 +50,9 @@ public class AuthController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private CacheBus cacheBus;
+
 
     @PostMapping("/signin")
     public ResponseEntity<?> authenticateUser(@Valid @RequestBody LoginRequest loginRequest){
@@ -90,6 +95,7 @@ public class AuthController {
         user.setRoles(Collections.singleton(userRole));
 
         User result = userRepository.save(user);
+        cacheBus.publish(CacheEvent.userChanged(result.getId()));
 
         URI location = ServletUriComponentsBuilder
                 .fromCurrentContextPath()
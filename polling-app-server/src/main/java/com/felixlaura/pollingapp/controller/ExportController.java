@@ -0,0 +1,155 @@
+package com.felixlaura.pollingapp.controller;
+
+import com.felixlaura.pollingapp.config.WebMvcConfig;
+import com.felixlaura.pollingapp.exception.BadRequestException;
+import com.felixlaura.pollingapp.exception.ResourceNotFoundException;
+import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.repository.PollRepository;
+import com.felixlaura.pollingapp.security.CurrentUser;
+import com.felixlaura.pollingapp.security.UserPrincipal;
+import com.felixlaura.pollingapp.service.ExportService;
+import com.felixlaura.pollingapp.util.ExportWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export the votes of a poll (its creator or an admin)
+ * Export the results of the current user's polls (every poll for admins)
+ * Exports are CSV or NDJSON, gzip compressed when the client accepts it.
+ */
+@RestController
+@RequestMapping("/api/polls")
+public class ExportController {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Value("${app.export.timeoutMs}")
+    private long timeoutMs;
+
+    @GetMapping("/{pollId}/votes/export")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> exportPollVotes(@CurrentUser UserPrincipal currentUser,
+                                                                 @PathVariable Long pollId,
+                                                                 @RequestParam(value = "format", defaultValue = ExportWriter.CSV) String format,
+                                                                 @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Poll poll = pollRepository.findById(pollId)
+                .orElseThrow(() -> new ResourceNotFoundException("Poll", "id", pollId));
+        if (!isAdmin(currentUser) && !currentUser.getId().equals(poll.getCreateBy())) {
+            throw new AccessDeniedException("Only the creator of the poll can export its votes");
+        }
+
+        return stream("poll-" + pollId + "-votes", format, acceptEncoding,
+                writer -> exportService.exportPollVotes(pollId, writer));
+    }
+
+    @GetMapping("/results/export")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<StreamingResponseBody> exportPollResults(@CurrentUser UserPrincipal currentUser,
+                                                                   @RequestParam(value = "format", defaultValue = ExportWriter.CSV) String format,
+                                                                   @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Long creatorId = isAdmin(currentUser) ? null : currentUser.getId();
+
+        return stream("poll-results", format, acceptEncoding,
+                writer -> exportService.exportPollResults(creatorId, writer));
+    }
+
+    private ResponseEntity<StreamingResponseBody> stream(String name, String format, String acceptEncoding, Export export) {
+        if (!ExportWriter.isSupported(format)) {
+            throw new BadRequestException("Export format must be " + ExportWriter.CSV + " or " + ExportWriter.NDJSON);
+        }
+        boolean gzip = acceptsGzip(acceptEncoding);
+        //Exports run past the default async timeout, WebMvcConfig applies this one to the export only
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(WebMvcConfig.ASYNC_TIMEOUT_ATTRIBUTE, timeoutMs, RequestAttributes.SCOPE_REQUEST);
+
+        //Runs on an async thread once the headers are sent, rows go out as they are read
+        StreamingResponseBody body = outputStream -> {
+            OutputStream out = gzip ? new GZIPOutputStream(outputStream, BUFFER_SIZE) : outputStream;
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+            export.write(ExportWriter.create(format, writer));
+            writer.flush();
+            if (gzip) {
+                ((GZIPOutputStream) out).finish();
+            }
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(ExportWriter.contentType(format) + ";charset=UTF-8"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(name + "." + format).build());
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+
+    /**
+     * Whether the Accept-Encoding header allows gzip: listed as gzip or x-gzip with a q-value above 0,
+     * or covered by * when gzip is not listed. "gzip;q=0" refuses it.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String element : acceptEncoding.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException ex) {
+                        q = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = q;
+            } else if (coding.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+
+    private static boolean isAdmin(UserPrincipal currentUser) {
+        return currentUser.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+
+    private interface Export {
+        void write(ExportWriter writer) throws IOException;
+    }
+}
@@ -1,5 +1,6 @@
 package com.felixlaura.pollingapp.controller;
 
+import com.felixlaura.pollingapp.cache.PollVersions;
 import com.felixlaura.pollingapp.model.Poll;
 import com.felixlaura.pollingapp.payload.*;
 import com.felixlaura.pollingapp.repository.PollRepository;
@@ -8,16 +9,25 @@ import com.felixlaura.pollingapp.repository.VoteRepository;
 import com.felixlaura.pollingapp.security.CurrentUser;
 import com.felixlaura.pollingapp.security.UserPrincipal;
 import com.felixlaura.pollingapp.service.PollService;
+import com.felixlaura.pollingapp.service.PollViewService;
+import com.felixlaura.pollingapp.service.VoteTimelineService;
 import com.felixlaura.pollingapp.util.AppConstants;
+import com.felixlaura.pollingapp.util.HttpCaching;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
-import javax.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
 import java.net.URI;
 
 /**
@@ -25,6 +35,7 @@ import java.net.URI;
  * Get a paginated list of polls sorted by their creation time
  * Get a Poll by pollId;
  * Vote for a choice in a poll
+ * Get the vote timeline of a poll, for its creator
  */
 
 @RestController
@@ -34,6 +45,21 @@ public class PollController {
     @Autowired
     private PollService pollService;
 
+    @Autowired
+    private VoteTimelineService voteTimelineService;
+
+    @Autowired
+    private PollVersions pollVersions;
+
+    @Autowired
+    private PollViewService pollViewService;
+
+    @Value("${app.httpCache.expiredMaxAgeSeconds}")
+    private long expiredMaxAgeSeconds;
+
+    @Value("${app.httpCache.listMaxAgeSeconds}")
+    private long listMaxAgeSeconds;
+
     @Autowired
     private PollRepository pollRepository;
 
@@ -46,12 +72,33 @@ public class PollController {
     private static final Logger logger = LoggerFactory.getLogger(PollController.class);
 
     @GetMapping
-    public PagedResponse<PollResponse> getPolls(@CurrentUser UserPrincipal userPrincipal,
+    public ResponseEntity<PagedResponse<PollResponse>> getPolls(@CurrentUser UserPrincipal userPrincipal,
                                                 @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size)
+                                                @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                @RequestParam(value = "unvoted", defaultValue = "false") boolean unvoted,
+                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept)
             {
 
-    return pollService.getAllPolls(userPrincipal, page, size);
+    //The version is read before loading, a response is never newer than its ETag says
+    String etag = HttpCaching.etag("polls", pollVersions.listingVersion(), userPrincipal, accept);
+    CacheControl cacheControl = HttpCaching.forListing(userPrincipal, listMaxAgeSeconds);
+    if(HttpCaching.matches(ifNoneMatch, etag)){
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl)
+                .header(HttpHeaders.VARY, HttpCaching.VARY).build();
+    }
+
+    //The unvoted feed pages with a cursor, page is ignored
+    if(unvoted){
+        if(userPrincipal == null){
+            throw new AccessDeniedException("Sign in to list the polls you have not voted in");
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).header(HttpHeaders.VARY, HttpCaching.VARY)
+                .body(pollService.getUnvotedPolls(userPrincipal, cursor, size));
+    }
+    return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).header(HttpHeaders.VARY, HttpCaching.VARY)
+            .body(pollService.getAllPolls(userPrincipal, page, size));
     }
 
     @PostMapping
@@ -68,14 +115,57 @@ public class PollController {
     }
 
     @GetMapping("/{pollId}")
-    public PollResponse getPollBodyId(@CurrentUser UserPrincipal currentUser,
-                                      @PathVariable Long pollId){
-        return pollService.getPollById(pollId, currentUser);
+    public ResponseEntity<PollResponse> getPollBodyId(@CurrentUser UserPrincipal currentUser,
+                                      @PathVariable Long pollId,
+                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                      HttpServletRequest request){
+        //The view numbers in the body move the ETag once per view epoch
+        String etag = HttpCaching.etag("poll-" + pollId + "." + pollViewService.viewEpoch(), pollVersions.pollVersion(pollId), currentUser, accept);
+        if(HttpCaching.matches(ifNoneMatch, etag)){
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag)
+                    .cacheControl(HttpCaching.forPoll(isFinal(pollVersions.isKnownExpired(pollId)), currentUser, expiredMaxAgeSeconds))
+                    .header(HttpHeaders.VARY, HttpCaching.VARY)
+                    .build();
+        }
+
+        //Counted once the ETag did not match, so a 304 never reads the database.
+        //Anonymous viewers are told apart by address (the forwarded client, see server.forward-headers-strategy) and user agent
+        pollViewService.recordView(pollId, currentUser != null ? "user:" + currentUser.getId()
+                : "client:" + request.getRemoteAddr() + "|" + request.getHeader(HttpHeaders.USER_AGENT));
+
+        PollResponse pollResponse = pollService.getPollById(pollId, currentUser);
+        pollVersions.rememberExpiration(pollId, pollResponse.getExpirationDateTime());
+
+        boolean isFinal = isFinal(pollResponse.getExpired());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag)
+                .cacheControl(HttpCaching.forPoll(isFinal, currentUser, expiredMaxAgeSeconds))
+                .header(HttpHeaders.VARY, HttpCaching.VARY);
+        if(isFinal){
+            //Nothing changes after the expiration
+            response.lastModified(pollResponse.getExpirationDateTime());
+        }
+        return response.body(pollResponse);
+    }
+
+    //An expired poll's response only stops changing when no views are counted
+    private boolean isFinal(boolean expired){
+        return expired && !pollViewService.isEnabled();
     }
 
+    @PostMapping("/{pollId}/votes")
+    @PreAuthorize("hasRole('USER')")
     public PollResponse castVote(@CurrentUser UserPrincipal currentUser,
                                  @PathVariable Long pollId,
-                                 @Valid @RequestBody VoteRequest voteRequest){
-        return pollService.castVoteAndGetUpdatedPoll(pollId,voteRequest, currentUser);
+                                 @Valid @RequestBody VoteRequest voteRequest,
+                                 @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey){
+        return pollService.castVoteAndGetUpdatedPoll(pollId,voteRequest, currentUser, idempotencyKey);
+    }
+
+    @GetMapping("/{pollId}/timeline")
+    @PreAuthorize("hasRole('USER')")
+    public PollTimelineResponse getPollTimeline(@CurrentUser UserPrincipal currentUser,
+                                                @PathVariable Long pollId){
+        return voteTimelineService.getTimeline(pollId, currentUser);
     }
 }
@@ -0,0 +1,58 @@
+package com.felixlaura.pollingapp.controller;
+
+import com.felixlaura.pollingapp.payload.ApiResponse;
+import com.felixlaura.pollingapp.service.ProfilingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Profile a live node with Java Flight Recorder: start a bounded recording, then stop it
+ * to download the .jfr file (open it with JDK Mission Control or the jfr tool).
+ * Recordings are per node, both calls must reach the same instance.
+ */
+@RestController
+@RequestMapping("/api/admin/profiling")
+public class ProfilingController {
+
+    @Autowired
+    private ProfilingService profilingService;
+
+    @PostMapping("/start")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse startRecording(@RequestParam(value = "seconds", defaultValue = "60") long seconds) {
+        Duration duration = profilingService.start(seconds);
+        return new ApiResponse(true, "Recording started, it stops by itself after " + duration.getSeconds() + " seconds");
+    }
+
+    @PostMapping("/stop")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> stopRecording() {
+        Path file = profilingService.stop();
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                Files.copy(file, outputStream);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_OCTET_STREAM);
+        headers.setContentDisposition(ContentDisposition.attachment().filename(file.getFileName().toString()).build());
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+}
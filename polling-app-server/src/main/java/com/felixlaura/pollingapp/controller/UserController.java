@@ -1,5 +1,6 @@
 package com.felixlaura.pollingapp.controller;
 
+import com.felixlaura.pollingapp.cache.PollVersions;
 import com.felixlaura.pollingapp.exception.ResourceNotFoundException;
 import com.felixlaura.pollingapp.model.User;
 import com.felixlaura.pollingapp.payload.*;
@@ -10,13 +11,22 @@ import com.felixlaura.pollingapp.security.CurrentUser;
 import com.felixlaura.pollingapp.security.UserPrincipal;
 import com.felixlaura.pollingapp.service.PollService;
 import com.felixlaura.pollingapp.util.AppConstants;
+import com.felixlaura.pollingapp.util.HttpCaching;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.function.Supplier;
+
 @RestController("api")
 public class UserController {
 
@@ -32,6 +42,12 @@ public class UserController {
     @Autowired
     private PollService pollService;
 
+    @Autowired
+    private PollVersions pollVersions;
+
+    @Value("${app.httpCache.listMaxAgeSeconds}")
+    private long listMaxAgeSeconds;
+
     @GetMapping("/user/me")
     @PreAuthorize("hasRole('USER')")
     public UserSummary getCurrentUser(@CurrentUser UserPrincipal currentUser){
@@ -47,35 +63,59 @@ public class UserController {
     }
 
     @GetMapping("/users/{username}")
-    public UserProfile getUserProfile(@PathVariable(value = "username") String username){
-
-        User user =userRepository.findByUsername(username)
-                .orElseThrow(()->new ResourceNotFoundException("User", "username", username));
-
-    long pollCount = pollRepository.countByCreateBy(user.getId());
-    long voteCount = voteRepository.countByUserId(user.getId());
-
-    UserProfile userProfile = new UserProfile(user.getId(), user.getUsername(),
-            user.getName(), user.getCreatedAt(), pollCount, voteCount);
-
-    return userProfile;
+    public ResponseEntity<UserProfile> getUserProfile(@PathVariable(value = "username") String username,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept){
+        //Poll and vote counts follow the listing version
+        return conditional("user-" + username, null, ifNoneMatch, accept, () -> {
+            User user =userRepository.findByUsername(username)
+                    .orElseThrow(()->new ResourceNotFoundException("User", "username", username));
+
+            long pollCount = pollRepository.countByCreateBy(user.getId());
+            long voteCount = voteRepository.countByUserId(user.getId());
+
+            UserProfile userProfile = new UserProfile(user.getId(), user.getUsername(),
+                    user.getName(), user.getCreatedAt(), pollCount, voteCount);
+
+            return userProfile;
+        });
     }
 
     @GetMapping("/users/{username}/polls")
-    public PagedResponse<PollResponse> getPollsCreatedBy(@PathVariable(value = "username") String username,
+    public ResponseEntity<PagedResponse<PollResponse>> getPollsCreatedBy(@PathVariable(value = "username") String username,
                                                          @CurrentUser UserPrincipal currentUser,
                                                          @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                         @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
-        return pollService.getPollsCreatedBy(username, currentUser, page, size);
+                                                         @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return conditional("user-polls", currentUser, ifNoneMatch, accept,
+                () -> pollService.getPollsCreatedBy(username, currentUser, page, size));
     }
 
 
     @GetMapping("/users/{username}/votes")
-    public PagedResponse<PollResponse> getPollsVotedBy(@PathVariable(value = "username") String username,
+    public ResponseEntity<PagedResponse<PollResponse>> getPollsVotedBy(@PathVariable(value = "username") String username,
                                                        @CurrentUser UserPrincipal currentUser,
                                                        @RequestParam(value = "page", defaultValue = AppConstants.DEFAULT_PAGE_NUMBER) int page,
-                                                       @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size) {
-        return pollService.getPollsVotedBy(username, currentUser, page, size);
+                                                       @RequestParam(value = "size", defaultValue = AppConstants.DEFAULT_PAGE_SIZE) int size,
+                                                       @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                       @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return conditional("user-votes", currentUser, ifNoneMatch, accept,
+                () -> pollService.getPollsVotedBy(username, currentUser, page, size));
+    }
+
+    //Listing responses: 304 when the listing version did not move, the body is only built otherwise
+    private <T> ResponseEntity<T> conditional(String resource, UserPrincipal currentUser, String ifNoneMatch, String accept,
+                                              Supplier<T> body) {
+        String etag = HttpCaching.etag(resource, pollVersions.listingVersion(), currentUser, accept);
+        CacheControl cacheControl = HttpCaching.forListing(currentUser, listMaxAgeSeconds);
+        if (HttpCaching.matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl)
+                    .header(HttpHeaders.VARY, HttpCaching.VARY).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl)
+                .header(HttpHeaders.VARY, HttpCaching.VARY)
+                .body(body.get());
     }
 
 
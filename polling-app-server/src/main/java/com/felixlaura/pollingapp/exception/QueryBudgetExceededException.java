@@ -0,0 +1,12 @@
+package com.felixlaura.pollingapp.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
+public class QueryBudgetExceededException extends RuntimeException{
+
+    public QueryBudgetExceededException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,71 @@
+package com.felixlaura.pollingapp.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Vote of a poll that expired long ago, moved out of the hot votes table by VoteArchiveService.
+ * Archived votes are only read for user history (polls voted by a user, selected choice), the per-choice
+ * totals are kept in Choice.archivedVoteCount. The table is stored compressed, see db/migration/V5__compress_archived_votes.sql.
+ */
+@Entity
+@Table(name = "archived_votes", indexes = {
+        @Index(name = "idx_archived_votes_user_poll", columnList = "user_id, poll_id")
+})
+public class ArchivedVote {
+
+    @Id
+    private Long id;
+
+    @Column(name = "poll_id", nullable = false)
+    private Long pollId;
+
+    @Column(name = "choice_id", nullable = false)
+    private Long choiceId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(Long pollId) {
+        this.pollId = pollId;
+    }
+
+    public Long getChoiceId() {
+        return choiceId;
+    }
+
+    public void setChoiceId(Long choiceId) {
+        this.choiceId = choiceId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+}
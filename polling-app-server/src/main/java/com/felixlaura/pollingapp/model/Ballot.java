@@ -0,0 +1,66 @@
+package com.felixlaura.pollingapp.model;
+
+import com.felixlaura.pollingapp.model.audit.DateAudit;
+
+import jakarta.persistence.*;
+
+/**
+ * The choices of one user in a MULTIPLE or RANKED poll, one row per user and poll.
+ * choiceIds lists the choice ids separated by commas, in ranking order for RANKED polls
+ * and in choice id order for MULTIPLE polls.
+ */
+@Entity
+@Table(name = "ballots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_ballots_poll_user", columnNames = {
+                "poll_id",
+                "user_id"
+        })
+}, indexes = {
+        @Index(name = "idx_ballots_user_id", columnList = "user_id")
+})
+public class Ballot extends DateAudit {
+
+    @Id
+    private Long id;
+
+    @Column(name = "poll_id", nullable = false)
+    private Long pollId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "choice_ids", nullable = false)
+    private String choiceIds;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(Long pollId) {
+        this.pollId = pollId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public String getChoiceIds() {
+        return choiceIds;
+    }
+
+    public void setChoiceIds(String choiceIds) {
+        this.choiceIds = choiceIds;
+    }
+}
@@ -1,8 +1,10 @@
 package com.felixlaura.pollingapp.model;
 
-import javax.persistence.*;
-import javax.validation.constraints.NotBlank;
-import javax.validation.constraints.Size;
+import com.felixlaura.pollingapp.util.SnowflakeId;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Size;
 import java.util.Objects;
 
 @Entity
@@ -10,7 +12,7 @@ import java.util.Objects;
 public class Choice {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @NotBlank
@@ -21,6 +23,10 @@ public class Choice {
     @JoinColumn(name = "poll_id", nullable = false)
     private Poll poll;
 
+    //Final vote count left behind when the votes of the poll are archived
+    @Column(nullable = false)
+    private long archivedVoteCount;
+
     public Choice(){
 
     }
@@ -53,6 +59,14 @@ public class Choice {
         this.poll = poll;
     }
 
+    public long getArchivedVoteCount() {
+        return archivedVoteCount;
+    }
+
+    public void setArchivedVoteCount(long archivedVoteCount) {
+        this.archivedVoteCount = archivedVoteCount;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,14 +1,15 @@
 package com.felixlaura.pollingapp.model;
 
 import com.felixlaura.pollingapp.model.audit.UserDateAudit;
+import com.felixlaura.pollingapp.util.SnowflakeId;
 import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
 
-import javax.persistence.*;
-import javax.validation.constraints.NotBlank;
-import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Size;
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 
 import java.time.Instant;
 import java.util.ArrayList;
@@ -19,7 +20,7 @@ import java.util.List;
 public class Poll extends UserDateAudit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @NotBlank
@@ -37,9 +38,24 @@ public class Poll extends UserDateAudit {
     @BatchSize(size = 30)
     private List<Choice> choices = new ArrayList<>();
 
+    //Polls scheduled to open later, null when the poll opened at creation
+    private Instant startDateTime;
+
     @NotNull
     private Instant expirationDateTime;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "poll_type", nullable = false, length = 8)
+    private PollType type = PollType.SINGLE;
+
+    //Choices a user may select in a MULTIPLE poll, 1 otherwise
+    @Column(name = "max_choices", nullable = false)
+    private int maxChoices = 1;
+
+    //Set once the votes of the poll have been moved to archived_votes, see VoteArchiveService
+    @Column(nullable = false)
+    private boolean archived;
+
     public Long getId() {
         return id;
     }
@@ -72,6 +88,38 @@ public class Poll extends UserDateAudit {
         this.expirationDateTime = expirationDateTime;
     }
 
+    public Instant getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Instant startDateTime) {
+        this.startDateTime = startDateTime;
+    }
+
+    public PollType getType() {
+        return type;
+    }
+
+    public void setType(PollType type) {
+        this.type = type;
+    }
+
+    public int getMaxChoices() {
+        return maxChoices;
+    }
+
+    public void setMaxChoices(int maxChoices) {
+        this.maxChoices = maxChoices;
+    }
+
+    public boolean isArchived() {
+        return archived;
+    }
+
+    public void setArchived(boolean archived) {
+        this.archived = archived;
+    }
+
     public void addChoice(Choice choice){
         choices.add(choice);
         choice.setPoll(this);
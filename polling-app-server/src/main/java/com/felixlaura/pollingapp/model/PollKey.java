@@ -0,0 +1,13 @@
+package com.felixlaura.pollingapp.model;
+
+import java.time.Instant;
+
+/**
+ * Position of a poll in the listing order (createdAt, id), read from idx_polls_created_at_id alone.
+ */
+public interface PollKey {
+
+    Long getId();
+
+    Instant getCreatedAt();
+}
@@ -0,0 +1,11 @@
+package com.felixlaura.pollingapp.model;
+
+/**
+ * SINGLE polls take one choice per user (votes table). MULTIPLE polls take up to Poll.maxChoices choices
+ * and RANKED polls a ranking of the choices, counted by instant runoff. Both are stored as ballots.
+ */
+public enum PollType {
+    SINGLE,
+    MULTIPLE,
+    RANKED
+}
@@ -2,8 +2,17 @@ package com.felixlaura.pollingapp.model;
 
 import com.felixlaura.pollingapp.model.audit.DateAudit;
 
-import javax.persistence.*;
+import com.felixlaura.pollingapp.util.SnowflakeId;
 
+import jakarta.persistence.*;
+
+/**
+ * The votes table is hash partitioned by poll_id inside one MySQL server (see db/migration/V4__partition_votes.sql),
+ * there is no routing across servers and partitions are only rebalanced by hand.
+ * MySQL does not allow foreign keys on partitioned tables, so the associations are mapped without constraints:
+ * PollService only stores votes for a loaded poll and one of its choices, and VoteIntegrityService removes
+ * the votes of polls, choices or users deleted later.
+ */
 @Entity
 @Table(name = "votes", uniqueConstraints = {
         @UniqueConstraint(columnNames = {
@@ -14,19 +23,19 @@ import javax.persistence.*;
 public class Vote extends DateAudit {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SnowflakeId
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "poll_id", nullable = false)
+    @JoinColumn(name = "poll_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Poll poll;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "choice_id", nullable = false)
+    @JoinColumn(name = "choice_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private Choice choice;
 
     @ManyToOne(fetch = FetchType.LAZY, optional = false)
-    @JoinColumn(name = "user_id", nullable = false)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
     private User user;
 
     public Long getId() {
@@ -0,0 +1,88 @@
+package com.felixlaura.pollingapp.model;
+
+import jakarta.persistence.*;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Persisted vote count of one poll over one minute or one hour, written periodically by VoteTimelineService
+ * from its in-memory ring buffers so that a restarted node can serve the timeline again.
+ */
+@Entity
+@Table(name = "poll_vote_timeline")
+@IdClass(VoteTimelineBucket.Key.class)
+public class VoteTimelineBucket {
+
+    public enum Granularity {
+        MINUTE,
+        HOUR
+    }
+
+    @Id
+    @Column(name = "poll_id")
+    private Long pollId;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 6)
+    private Granularity granularity;
+
+    @Id
+    @Column(name = "bucket_start")
+    private Instant bucketStart;
+
+    @Column(name = "vote_count", nullable = false)
+    private long voteCount;
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(Long pollId) {
+        this.pollId = pollId;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    public Instant getBucketStart() {
+        return bucketStart;
+    }
+
+    public void setBucketStart(Instant bucketStart) {
+        this.bucketStart = bucketStart;
+    }
+
+    public long getVoteCount() {
+        return voteCount;
+    }
+
+    public void setVoteCount(long voteCount) {
+        this.voteCount = voteCount;
+    }
+
+    public static class Key implements Serializable {
+        private Long pollId;
+        private Granularity granularity;
+        private Instant bucketStart;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return Objects.equals(pollId, key.pollId) && granularity == key.granularity && Objects.equals(bucketStart, key.bucketStart);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pollId, granularity, bucketStart);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.felixlaura.pollingapp.model;
+
+/**
+ * Poll and choice of one vote of a user, live or archived, as loaded into the UserVoteIndex.
+ */
+public interface VotedChoice {
+
+    Long getPollId();
+
+    Long getChoiceId();
+}
@@ -0,0 +1,23 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event around the check of the bearer token in JwtAuthenticationFilter, signature verification
+ * and loading of the user included.
+ */
+@Name("com.felixlaura.pollingapp.JwtVerification")
+@Label("JWT Verification")
+@Category({"Polling App", "Security"})
+@StackTrace(false)
+public class JwtVerificationEvent extends jdk.jfr.Event {
+
+    @Label("Valid")
+    public boolean valid;
+
+    @Label("Queries")
+    public int queries;
+}
@@ -0,0 +1,22 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event around each BCrypt hash (sign up) or check (sign in), see RecordingPasswordEncoder.
+ */
+@Name("com.felixlaura.pollingapp.PasswordCheck")
+@Label("Password Check")
+@Category({"Polling App", "Security"})
+@StackTrace(false)
+public class PasswordCheckEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Matched")
+    public boolean matched;
+}
@@ -0,0 +1,36 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event around the assembly of one page of polls by PollService: the listing query, vote counts,
+ * creators, the selected choices and the mapping to PollResponses.
+ */
+@Name("com.felixlaura.pollingapp.PollPage")
+@Label("Poll Page")
+@Category({"Polling App", "Polls"})
+@Description("Assembly of a page of polls")
+@StackTrace(false)
+public class PollPageEvent extends jdk.jfr.Event {
+
+    @Label("Listing")
+    public String listing;
+
+    @Label("Page")
+    public int page;
+
+    @Label("Page Size")
+    public int pageSize;
+
+    @Label("Polls")
+    @Description("Polls on the returned page")
+    public int polls;
+
+    @Label("Queries")
+    @Description("SQL statements sent while assembling the page")
+    public int queries;
+}
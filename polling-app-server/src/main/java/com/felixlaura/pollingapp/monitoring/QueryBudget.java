@@ -0,0 +1,94 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import com.felixlaura.pollingapp.exception.QueryBudgetExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SQL statement budgets per endpoint, read from app.queryBudget.rules.
+ * Every rule looks like "GET /api/polls/**=5" and can end with ":fail" or ":log" to override the default mode.
+ * The first rule matching the request wins. In log mode an exceeded budget is logged as a warning,
+ * in fail mode the request fails with QueryBudgetExceededException, which is meant for tests and staging.
+ */
+@Component
+public class QueryBudget {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryBudget.class);
+
+    private static final String CHECKED_ATTRIBUTE = QueryBudget.class.getName() + ".CHECKED";
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<Rule> rules = new ArrayList<>();
+
+    @Value("${app.queryBudget.rules}")
+    private String[] ruleDefinitions;
+
+    @Value("${app.queryBudget.defaultMode}")
+    private String defaultMode;
+
+    @PostConstruct
+    void parseRules() {
+        for (String definition : ruleDefinitions) {
+            if (definition.isBlank()) {
+                continue;
+            }
+            String[] endpointAndLimit = definition.trim().split("=");
+            String[] methodAndPattern = endpointAndLimit[0].trim().split("\\s+");
+            String[] limitAndMode = endpointAndLimit[1].trim().split(":");
+
+            String mode = limitAndMode.length > 1 ? limitAndMode[1] : defaultMode;
+            rules.add(new Rule(methodAndPattern[0], methodAndPattern[1],
+                    Integer.parseInt(limitAndMode[0]), "fail".equalsIgnoreCase(mode)));
+        }
+    }
+
+    /**
+     * Checks the statements counted so far against the budget of the request.
+     * The check is done at most once per request.
+     */
+    public void check(HttpServletRequest request, int statementCount) {
+        if (request.getAttribute(CHECKED_ATTRIBUTE) != null) {
+            return;
+        }
+        request.setAttribute(CHECKED_ATTRIBUTE, Boolean.TRUE);
+
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        for (Rule rule : rules) {
+            if (!rule.method.equals(request.getMethod()) || !pathMatcher.match(rule.pattern, path)) {
+                continue;
+            }
+            if (statementCount > rule.limit) {
+                String message = String.format("%s %s issued %d SQL statements, budget is %d",
+                        request.getMethod(), path, statementCount, rule.limit);
+                if (rule.fail) {
+                    throw new QueryBudgetExceededException(message);
+                }
+                logger.warn(message);
+            }
+            return;
+        }
+    }
+
+    private static class Rule {
+        private final String method;
+        private final String pattern;
+        private final int limit;
+        private final boolean fail;
+
+        private Rule(String method, String pattern, int limit, boolean fail) {
+            this.method = method;
+            this.pattern = pattern;
+            this.limit = limit;
+            this.fail = fail;
+        }
+    }
+}
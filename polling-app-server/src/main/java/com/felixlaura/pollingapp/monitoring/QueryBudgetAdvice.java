@@ -0,0 +1,42 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Adds the statement count to the Server-Timing header and checks the budget
+ * just before a controller response body is written, while headers can still be set.
+ */
+@ControllerAdvice
+public class QueryBudgetAdvice implements ResponseBodyAdvice<Object> {
+
+    @Autowired
+    private QueryBudget queryBudget;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        if (QueryCounter.isActive()) {
+            int count = QueryCounter.count();
+            response.getHeaders().set(QueryBudgetFilter.SERVER_TIMING_HEADER, QueryBudgetFilter.serverTiming(count));
+
+            if (request instanceof ServletServerHttpRequest) {
+                queryBudget.check(((ServletServerHttpRequest) request).getServletRequest(), count);
+            }
+        }
+        return body;
+    }
+}
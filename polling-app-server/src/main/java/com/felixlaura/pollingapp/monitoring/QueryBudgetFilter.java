@@ -0,0 +1,69 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import com.felixlaura.pollingapp.exception.QueryBudgetExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * QueryBudgetFilter runs first so that every statement of the request is counted,
+ * including the ones made while authenticating the user.
+ * Responses written by controllers get their count from QueryBudgetAdvice before the body is written,
+ * this filter covers whatever is left (errors, empty bodies) once the request is done.
+ * A ":fail" budget exceeded here turns the response into a 500 when nothing was sent yet,
+ * a response already committed can only be logged.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class QueryBudgetFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryBudgetFilter.class);
+
+    @Autowired
+    private QueryBudget queryBudget;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryCounter.start();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            int count = QueryCounter.stop();
+            if (!response.isCommitted() && !response.containsHeader(SERVER_TIMING_HEADER)) {
+                response.setHeader(SERVER_TIMING_HEADER, serverTiming(count));
+            }
+            try {
+                queryBudget.check(request, count);
+            } catch (QueryBudgetExceededException ex) {
+                if (response.isCommitted()) {
+                    logger.error("{} (the response was already sent)", ex.getMessage());
+                } else {
+                    logger.error(ex.getMessage());
+                    response.reset();
+                    response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+                    response.setHeader(SERVER_TIMING_HEADER, serverTiming(count));
+                    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                    response.getWriter().write("{\"success\":false,\"message\":\"SQL statement budget exceeded\"}");
+                }
+            }
+        }
+    }
+
+    static String serverTiming(int statementCount) {
+        return "sql;desc=\"" + statementCount + " statements\"";
+    }
+}
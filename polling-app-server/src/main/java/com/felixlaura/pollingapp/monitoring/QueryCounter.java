@@ -0,0 +1,49 @@
+package com.felixlaura.pollingapp.monitoring;
+
+/**
+ * Counts the SQL statements sent to the database by the current thread.
+ * QueryBudgetFilter starts a count for every HTTP request. Integration tests can use the same API
+ * around a service call:
+ *
+ * <pre>
+ *     QueryCounter.start();
+ *     pollService.getAllPolls(null, 0, 30);
+ *     assertTrue(QueryCounter.count() &lt;= 5);
+ *     QueryCounter.stop();
+ * </pre>
+ *
+ * Over HTTP the count is also returned in the Server-Timing response header.
+ */
+public final class QueryCounter {
+
+    private static final ThreadLocal<int[]> counter = new ThreadLocal<>();
+
+    private QueryCounter() {
+    }
+
+    public static void start() {
+        counter.set(new int[1]);
+    }
+
+    public static int count() {
+        int[] current = counter.get();
+        return current == null ? 0 : current[0];
+    }
+
+    public static int stop() {
+        int count = count();
+        counter.remove();
+        return count;
+    }
+
+    public static boolean isActive() {
+        return counter.get() != null;
+    }
+
+    static void increment() {
+        int[] current = counter.get();
+        if (current != null) {
+            current[0]++;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * DataSource proxy that reports every statement execution on its connections to QueryCounter.
+ * Statements are counted when they run (execute, executeQuery, executeUpdate, executeBatch), so a prepared
+ * statement reused for several executions counts every one of them. A JDBC batch is one round-trip
+ * and counts as one statement.
+ */
+public class QueryCountingDataSource extends DelegatingDataSource {
+
+    public QueryCountingDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return countingConnection(super.getConnection(username, password));
+    }
+
+    private Connection countingConnection(Connection target) {
+        Connection[] connection = new Connection[1];
+        connection[0] = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    switch (method.getName()) {
+                        case "createStatement":
+                            return countingStatement(Statement.class, (Statement) result, connection[0]);
+                        case "prepareStatement":
+                            return countingStatement(PreparedStatement.class, (Statement) result, connection[0]);
+                        case "prepareCall":
+                            return countingStatement(CallableStatement.class, (Statement) result, connection[0]);
+                        default:
+                            return result;
+                    }
+                });
+        return connection[0];
+    }
+
+    private Statement countingStatement(Class<? extends Statement> type, Statement target, Connection connection) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                QueryCounter.increment();
+            } else if (name.equals("getConnection")) {
+                return connection;
+            }
+            return invoke(target, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures how long a fresh node takes to answer its first request, counted from JVM start.
+ * That is the number that matters when autoscaling, the application ready time alone hides
+ * everything lazy initialization pushes to the first request.
+ * Reported in the log and in the app.startup.first.request gauge.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class StartupTimingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupTimingFilter.class);
+
+    private final AtomicBoolean firstRequest = new AtomicBoolean(true);
+
+    private volatile long readyMillis;
+
+    private volatile long firstRequestMillis;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        readyMillis = uptimeMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (firstRequest.compareAndSet(true, false)) {
+                firstRequestMillis = uptimeMillis();
+                TimeGauge.builder("app.startup.first.request", this, TimeUnit.MILLISECONDS, filter -> filter.firstRequestMillis)
+                        .description("Time from JVM start until the first request was answered")
+                        .register(meterRegistry);
+                logger.info("First request answered {} ms after JVM start (application ready after {} ms)",
+                        firstRequestMillis, readyMillis);
+            }
+        }
+    }
+
+    private static long uptimeMillis() {
+        return System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+}
@@ -0,0 +1,37 @@
+package com.felixlaura.pollingapp.monitoring;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event around PollService.castVoteAndGetUpdatedPoll, from the poll lookup to the updated PollResponse.
+ * The outcome tells the paths apart: a new vote, a retry of the same vote, an Idempotency-Key replay or a refused vote.
+ */
+@Name("com.felixlaura.pollingapp.VoteCast")
+@Label("Vote Cast")
+@Category({"Polling App", "Votes"})
+@Description("Vote casting, including duplicate and replayed votes")
+@StackTrace(false)
+public class VoteCastEvent extends jdk.jfr.Event {
+
+    public static final String INSERTED = "inserted";
+    public static final String DUPLICATE = "duplicate";
+    public static final String REPLAYED = "replayed";
+    public static final String REFUSED = "refused";
+
+    @Label("Poll Id")
+    public long pollId;
+
+    @Label("Choice Id")
+    public long choiceId;
+
+    @Label("Outcome")
+    public String outcome = REFUSED;
+
+    @Label("Queries")
+    @Description("SQL statements sent while casting the vote")
+    public int queries;
+}
@@ -1,6 +1,6 @@
 package com.felixlaura.pollingapp.payload;
 
-import javax.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotBlank;
 
 public class LoginRequest {
 
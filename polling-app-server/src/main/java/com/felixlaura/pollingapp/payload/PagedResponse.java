@@ -1,5 +1,7 @@
 package com.felixlaura.pollingapp.payload;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class PagedResponse<T> {
@@ -10,6 +12,13 @@ public class PagedResponse<T> {
     private int totalPages;
     private boolean last;
 
+    //False when totalElements / totalPages are a cached count, or -1 because the listing does not count
+    private boolean totalExact = true;
+
+    //Set by cursor based listings, pass it back as the cursor parameter to get the next page
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
     public PagedResponse() {
     }
 
@@ -22,6 +31,22 @@ public class PagedResponse<T> {
         this.last = last;
     }
 
+    public boolean isTotalExact() {
+        return totalExact;
+    }
+
+    public void setTotalExact(boolean totalExact) {
+        this.totalExact = totalExact;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     public List<T> getContent() {
         return content;
     }
@@ -1,8 +1,8 @@
 package com.felixlaura.pollingapp.payload;
 
-import javax.persistence.ManyToOne;
-import javax.validation.constraints.Max;
-import javax.validation.constraints.NotNull;
+import jakarta.persistence.ManyToOne;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.NotNull;
 
 public class PollLength {
 
@@ -1,9 +1,12 @@
 package com.felixlaura.pollingapp.payload;
 
-import javax.validation.Valid;
-import javax.validation.constraints.NotBlank;
-import javax.validation.constraints.NotNull;
-import javax.validation.constraints.Size;
+import com.felixlaura.pollingapp.model.PollType;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.time.Instant;
 import java.util.List;
 
 public class PollRequest {
@@ -20,6 +23,15 @@ public class PollRequest {
     @Valid
     private PollLength pollLength;
 
+    //Optional, must be in the future: the poll opens for votes at this time and its length counts from it
+    private Instant startDateTime;
+
+    //Optional, SINGLE by default
+    private PollType type;
+
+    //Choices a user may select in a MULTIPLE poll, all of them by default
+    private Integer maxChoices;
+
     public String getQuestion() {
         return question;
     }
@@ -43,4 +55,28 @@ public class PollRequest {
     public void setPollLength(PollLength pollLength) {
         this.pollLength = pollLength;
     }
+
+    public PollType getType() {
+        return type;
+    }
+
+    public void setType(PollType type) {
+        this.type = type;
+    }
+
+    public Integer getMaxChoices() {
+        return maxChoices;
+    }
+
+    public void setMaxChoices(Integer maxChoices) {
+        this.maxChoices = maxChoices;
+    }
+
+    public Instant getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Instant startDateTime) {
+        this.startDateTime = startDateTime;
+    }
 }
@@ -1,6 +1,7 @@
 package com.felixlaura.pollingapp.payload;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.felixlaura.pollingapp.model.PollType;
 
 import java.time.Instant;
 import java.util.List;
@@ -14,11 +15,38 @@ public class PollResponse {
     private Instant creationDateTime;
     private Instant expirationDateTime;
     private Boolean isExpired;
+    private PollType type;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Integer maxChoices;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Instant startDateTime;
 
     @JsonInclude(JsonInclude.Include.NON_NULL)
     private Long selectedChoice;
+
+    //MULTIPLE and RANKED polls: the choices of the current user, in ranking order for RANKED polls
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Long> selectedChoices;
+
+    //Votes of a MULTIPLE poll count every selected choice, totalVotes is then the number of ballots
     private Long totalVotes;
 
+    //RANKED polls: the instant-runoff winner and every round of the count
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long winner;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<RunoffRound> rounds;
+
+    //Views of the poll page and the estimated number of distinct viewers, see PollViewService
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long views;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long uniqueViewers;
+
     public Long getId() {
         return id;
     }
@@ -59,6 +87,14 @@ public class PollResponse {
         this.creationDateTime = creationDateTime;
     }
 
+    public Instant getStartDateTime() {
+        return startDateTime;
+    }
+
+    public void setStartDateTime(Instant startDateTime) {
+        this.startDateTime = startDateTime;
+    }
+
     public Instant getExpirationDateTime() {
         return expirationDateTime;
     }
@@ -75,6 +111,22 @@ public class PollResponse {
         isExpired = expired;
     }
 
+    public PollType getType() {
+        return type;
+    }
+
+    public void setType(PollType type) {
+        this.type = type;
+    }
+
+    public Integer getMaxChoices() {
+        return maxChoices;
+    }
+
+    public void setMaxChoices(Integer maxChoices) {
+        this.maxChoices = maxChoices;
+    }
+
     public Long getSelectedChoice() {
         return selectedChoice;
     }
@@ -83,6 +135,46 @@ public class PollResponse {
         this.selectedChoice = selectedChoice;
     }
 
+    public List<Long> getSelectedChoices() {
+        return selectedChoices;
+    }
+
+    public void setSelectedChoices(List<Long> selectedChoices) {
+        this.selectedChoices = selectedChoices;
+    }
+
+    public Long getWinner() {
+        return winner;
+    }
+
+    public void setWinner(Long winner) {
+        this.winner = winner;
+    }
+
+    public List<RunoffRound> getRounds() {
+        return rounds;
+    }
+
+    public void setRounds(List<RunoffRound> rounds) {
+        this.rounds = rounds;
+    }
+
+    public Long getViews() {
+        return views;
+    }
+
+    public void setViews(Long views) {
+        this.views = views;
+    }
+
+    public Long getUniqueViewers() {
+        return uniqueViewers;
+    }
+
+    public void setUniqueViewers(Long uniqueViewers) {
+        this.uniqueViewers = uniqueViewers;
+    }
+
     public Long getTotalVotes() {
         return totalVotes;
     }
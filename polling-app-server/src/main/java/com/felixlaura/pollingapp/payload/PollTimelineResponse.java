@@ -0,0 +1,44 @@
+package com.felixlaura.pollingapp.payload;
+
+import java.util.List;
+
+public class PollTimelineResponse {
+
+    private Long pollId;
+
+    //Votes per minute over the last app.timeline.minuteSlots minutes with votes
+    private List<TimelinePoint> minutes;
+
+    //Votes per hour over the whole life of the poll
+    private List<TimelinePoint> hours;
+
+    public PollTimelineResponse(Long pollId, List<TimelinePoint> minutes, List<TimelinePoint> hours) {
+        this.pollId = pollId;
+        this.minutes = minutes;
+        this.hours = hours;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public void setPollId(Long pollId) {
+        this.pollId = pollId;
+    }
+
+    public List<TimelinePoint> getMinutes() {
+        return minutes;
+    }
+
+    public void setMinutes(List<TimelinePoint> minutes) {
+        this.minutes = minutes;
+    }
+
+    public List<TimelinePoint> getHours() {
+        return hours;
+    }
+
+    public void setHours(List<TimelinePoint> hours) {
+        this.hours = hours;
+    }
+}
@@ -0,0 +1,51 @@
+package com.felixlaura.pollingapp.payload;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * One round of the instant-runoff count of a RANKED poll: the votes of the choices still in the count,
+ * the choice eliminated at the end of the round (none for the last round) and the ballots without a choice left.
+ */
+public class RunoffRound {
+
+    private int round;
+    private Map<Long, Long> voteCounts;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long eliminatedChoice;
+    private long exhaustedBallots;
+
+    public int getRound() {
+        return round;
+    }
+
+    public void setRound(int round) {
+        this.round = round;
+    }
+
+    public Map<Long, Long> getVoteCounts() {
+        return voteCounts;
+    }
+
+    public void setVoteCounts(Map<Long, Long> voteCounts) {
+        this.voteCounts = voteCounts;
+    }
+
+    public Long getEliminatedChoice() {
+        return eliminatedChoice;
+    }
+
+    public void setEliminatedChoice(Long eliminatedChoice) {
+        this.eliminatedChoice = eliminatedChoice;
+    }
+
+    public long getExhaustedBallots() {
+        return exhaustedBallots;
+    }
+
+    public void setExhaustedBallots(long exhaustedBallots) {
+        this.exhaustedBallots = exhaustedBallots;
+    }
+}
@@ -0,0 +1,31 @@
+package com.felixlaura.pollingapp.payload;
+
+import java.time.Instant;
+
+public class TimelinePoint {
+
+    private Instant start;
+
+    private long votes;
+
+    public TimelinePoint(Instant start, long votes) {
+        this.start = start;
+        this.votes = votes;
+    }
+
+    public Instant getStart() {
+        return start;
+    }
+
+    public void setStart(Instant start) {
+        this.start = start;
+    }
+
+    public long getVotes() {
+        return votes;
+    }
+
+    public void setVotes(long votes) {
+        this.votes = votes;
+    }
+}
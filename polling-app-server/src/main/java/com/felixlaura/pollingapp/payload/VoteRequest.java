@@ -1,12 +1,16 @@
 package com.felixlaura.pollingapp.payload;
 
-import javax.validation.constraints.NotNull;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
 
 public class VoteRequest {
 
     @NotNull
     private long choiceId;
 
+    //MULTIPLE polls: the selected choices, RANKED polls: the choices in ranking order
+    private List<Long> choiceIds;
+
     public long getChoiceId() {
         return choiceId;
     }
@@ -14,4 +18,12 @@ public class VoteRequest {
     public void setChoiceId(long choiceId) {
         this.choiceId = choiceId;
     }
+
+    public List<Long> getChoiceIds() {
+        return choiceIds;
+    }
+
+    public void setChoiceIds(List<Long> choiceIds) {
+        this.choiceIds = choiceIds;
+    }
 }
@@ -0,0 +1,23 @@
+package com.felixlaura.pollingapp.repository;
+
+import com.felixlaura.pollingapp.model.ArchivedVote;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ArchivedVoteRepository extends JpaRepository<ArchivedVote, Long> {
+
+    List<ArchivedVote> findByUserIdAndPollIdIn(Long userId, List<Long> pollIds);
+
+    ArchivedVote findByUserIdAndPollId(Long userId, Long pollId);
+
+    @Modifying
+    @Query(value = "INSERT INTO archived_votes (id, poll_id, choice_id, user_id, created_at) " +
+            "SELECT id, poll_id, choice_id, user_id, created_at FROM votes WHERE poll_id = :pollId", nativeQuery = true)
+    int copyVotesOfPoll(@Param("pollId") Long pollId);
+}
@@ -0,0 +1,27 @@
+package com.felixlaura.pollingapp.repository;
+
+import com.felixlaura.pollingapp.model.Ballot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+@Repository
+public interface BallotRepository extends JpaRepository<Ballot, Long> {
+
+    //Returns 0 instead of failing when the user already has a ballot in the poll (uk_ballots_poll_user).
+    //Unlike INSERT IGNORE, any other error still fails the statement
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO ballots (id, poll_id, user_id, choice_ids, created_at, updated_at) " +
+            "VALUES (:id, :pollId, :userId, :choiceIds, :createdAt, :createdAt) ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertIfAbsent(@Param("id") Long id, @Param("pollId") Long pollId, @Param("userId") Long userId,
+                     @Param("choiceIds") String choiceIds, @Param("createdAt") Instant createdAt);
+
+    @Query(value = "SELECT choice_ids FROM ballots WHERE poll_id = :pollId AND user_id = :userId", nativeQuery = true)
+    String findChoiceIdsByUserIdAndPollId(@Param("userId") Long userId, @Param("pollId") Long pollId);
+}
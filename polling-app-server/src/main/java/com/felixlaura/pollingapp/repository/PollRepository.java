@@ -1,12 +1,17 @@
 package com.felixlaura.pollingapp.repository;
 
 import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.model.PollKey;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,11 +22,24 @@ public interface PollRepository extends JpaRepository<Poll, Long> {
 
     Page<Poll> findByCreateBy(Long userId, Pageable pageable);
 
+    //Slice variants read one row more than the page instead of running a COUNT(*)
+    Slice<Poll> findAllBy(Pageable pageable);
+
+    Slice<Poll> findSliceByCreateBy(Long userId, Pageable pageable);
+
     long countByCreateBy(Long userId);
 
     List<Poll> findByIdIn(List<Long> pollIds);
 
     List<Poll> findByIdIn(List<Long> pollIds, Sort sort);
 
+    List<Poll> findTop100ByArchivedFalseAndExpirationDateTimeBefore(Instant expiredBefore);
+
+    //Keyset paging over the listing order, the pageable only limits the number of keys
+    @Query("SELECT p.id AS id, p.createdAt AS createdAt FROM Poll p " +
+            "WHERE p.createdAt > :createdAt OR (p.createdAt = :createdAt AND p.id > :id) " +
+            "ORDER BY p.createdAt, p.id")
+    List<PollKey> findKeysAfter(@Param("createdAt") Instant createdAt, @Param("id") Long id, Pageable pageable);
+
     }
 
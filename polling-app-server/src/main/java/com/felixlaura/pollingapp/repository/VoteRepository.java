@@ -2,13 +2,17 @@ package com.felixlaura.pollingapp.repository;
 
 import com.felixlaura.pollingapp.model.ChoiceVoteCount;
 import com.felixlaura.pollingapp.model.Vote;
+import com.felixlaura.pollingapp.model.VotedChoice;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 
 @Repository
@@ -25,10 +29,44 @@ public interface VoteRepository extends JpaRepository<Vote, Long> {
     @Query("SELECT v FROM Vote v where v.user.id = :userId and v.poll.id = :pollId")
     Vote findByUserIdAndPollId(@Param("userId") Long userId, @Param("pollId") Long pollId);
 
-    @Query("SELECT COUNT(v.id) from Vote v where v.user.id = :userId")
+    //Votes of archived polls live in archived_votes, user history reads both tables
+    @Query(value = "SELECT (SELECT COUNT(*) FROM votes WHERE user_id = :userId) + " +
+            "(SELECT COUNT(*) FROM archived_votes WHERE user_id = :userId)", nativeQuery = true)
     long countByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT v.poll.id FROM Vote v WHERE v.user.id = :userId")
+    //Oldest vote first, pass an unsorted Pageable: a Sort would be appended after this ORDER BY
+    @Query(value = "SELECT v.poll_id FROM (" +
+            "SELECT poll_id, created_at FROM votes WHERE user_id = :userId " +
+            "UNION ALL SELECT poll_id, created_at FROM archived_votes WHERE user_id = :userId) v " +
+            "ORDER BY v.created_at",
+            countQuery = "SELECT (SELECT COUNT(*) FROM votes WHERE user_id = :userId) + " +
+                    "(SELECT COUNT(*) FROM archived_votes WHERE user_id = :userId)",
+            nativeQuery = true)
     Page<Long> findVotedPollIdsByUserId(@Param("userId") Long userId, Pageable pageable);
 
+    //Every vote of a user in voting order, loaded once into the UserVoteIndex. Ballots count with their first choice
+    @Query(value = "SELECT v.poll_id AS pollId, v.choice_id AS choiceId FROM (" +
+            "SELECT poll_id, choice_id, created_at FROM votes WHERE user_id = :userId " +
+            "UNION ALL SELECT poll_id, choice_id, created_at FROM archived_votes WHERE user_id = :userId " +
+            "UNION ALL SELECT poll_id, CAST(SUBSTRING_INDEX(choice_ids, ',', 1) AS UNSIGNED), created_at " +
+            "FROM ballots WHERE user_id = :userId) v " +
+            "ORDER BY v.created_at", nativeQuery = true)
+    List<VotedChoice> findVotedChoicesByUserId(@Param("userId") Long userId);
+
+    //Returns 0 instead of failing when the user already voted in the poll (uk_votes_poll_user).
+    //Unlike INSERT IGNORE, any other error still fails the statement
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO votes (id, poll_id, choice_id, user_id, created_at, updated_at) " +
+            "VALUES (:id, :pollId, :choiceId, :userId, :createdAt, :createdAt) ON DUPLICATE KEY UPDATE id = id", nativeQuery = true)
+    int insertIfAbsent(@Param("id") Long id, @Param("pollId") Long pollId, @Param("choiceId") Long choiceId,
+                     @Param("userId") Long userId, @Param("createdAt") Instant createdAt);
+
+    @Query(value = "SELECT choice_id FROM votes WHERE poll_id = :pollId AND user_id = :userId", nativeQuery = true)
+    Long findChoiceIdByUserIdAndPollId(@Param("userId") Long userId, @Param("pollId") Long pollId);
+
+    @Modifying
+    @Query("DELETE FROM Vote v WHERE v.poll.id = :pollId")
+    int deleteByPollId(@Param("pollId") Long pollId);
+
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.felixlaura.pollingapp.repository;
+
+import com.felixlaura.pollingapp.model.VoteTimelineBucket;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface VoteTimelineRepository extends JpaRepository<VoteTimelineBucket, VoteTimelineBucket.Key> {
+
+    List<VoteTimelineBucket> findByPollId(Long pollId);
+
+    //Every node counts every vote, so the highest count written for a bucket is the right one
+    @Modifying
+    @Query(value = "INSERT INTO poll_vote_timeline (poll_id, granularity, bucket_start, vote_count) " +
+            "VALUES (:pollId, :granularity, :bucketStart, :voteCount) " +
+            "ON DUPLICATE KEY UPDATE vote_count = GREATEST(vote_count, VALUES(vote_count))", nativeQuery = true)
+    int upsert(@Param("pollId") Long pollId, @Param("granularity") String granularity,
+               @Param("bucketStart") Instant bucketStart, @Param("voteCount") long voteCount);
+}
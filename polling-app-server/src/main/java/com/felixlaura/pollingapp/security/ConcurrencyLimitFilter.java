@@ -0,0 +1,176 @@
+package com.felixlaura.pollingapp.security;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * ConcurrencyLimitFilter runs first in the security chain and bounds the requests in flight with one
+ * ConcurrencyLimiter per pool: auth (/api/auth/**), votes (POST /api/polls/{pollId}/votes) and reads (the rest of /api).
+ * When MySQL slows down the limits shrink with the latency, and the excess is answered 503 right away instead of
+ * holding Tomcat threads behind the connection pool. Sign in and voting keep their own pools, so a flood of reads
+ * cannot starve them.
+ *
+ * The filter runs before JwtAuthenticationFilter, which loads the user from the database. A request counts as
+ * authenticated here when its Bearer token has a valid signature and has not expired, which is checked in memory.
+ * Anonymous requests, and requests with a forged or expired token, only get part of every limit.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private Pool auth;
+    private Pool votes;
+    private Pool reads;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Value("${app.concurrency.enabled}")
+    private boolean enabled;
+
+    @Value("${app.concurrency.minLimit}")
+    private int minLimit;
+
+    @Value("${app.concurrency.smoothing}")
+    private double smoothing;
+
+    @Value("${app.concurrency.backoffRatio}")
+    private double backoffRatio;
+
+    @Value("${app.concurrency.anonymousShare}")
+    private double anonymousShare;
+
+    @Value("${app.concurrency.auth.initialLimit}")
+    private int authInitialLimit;
+
+    @Value("${app.concurrency.auth.maxLimit}")
+    private int authMaxLimit;
+
+    @Value("${app.concurrency.votes.initialLimit}")
+    private int votesInitialLimit;
+
+    @Value("${app.concurrency.votes.maxLimit}")
+    private int votesMaxLimit;
+
+    @Value("${app.concurrency.reads.initialLimit}")
+    private int readsInitialLimit;
+
+    @Value("${app.concurrency.reads.maxLimit}")
+    private int readsMaxLimit;
+
+    @PostConstruct
+    void initPools() {
+        auth = new Pool("auth", authInitialLimit, authMaxLimit);
+        votes = new Pool("votes", votesInitialLimit, votesMaxLimit);
+        reads = new Pool("reads", readsInitialLimit, readsMaxLimit);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !path(request).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        Pool pool = poolOf(request);
+        String authorization = request.getHeader(HttpHeaders.AUTHORIZATION);
+        boolean authenticated = StringUtils.hasText(authorization) && authorization.startsWith("Bearer ")
+                && tokenProvider.isValidToken(authorization.substring(7));
+
+        if (!pool.limiter.tryAcquire(authenticated)) {
+            (authenticated ? pool.rejectedAuthenticated : pool.rejectedAnonymous).increment();
+            logger.debug("Concurrency limit {} of the {} pool reached", pool.limiter.getLimit(), pool.name);
+
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader("Retry-After", "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.getWriter().write("{\"success\":false,\"message\":\"The server is busy, please try again shortly\"}");
+            return;
+        }
+
+        long started = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            if (request.isAsyncStarted()) {
+                //Streamed exports go on after this returns, their time says nothing about the load
+                pool.limiter.onIgnore();
+            } else if (failed) {
+                pool.limiter.onFailure();
+            } else {
+                pool.limiter.onSuccess(System.nanoTime() - started);
+            }
+        }
+    }
+
+    private Pool poolOf(HttpServletRequest request) {
+        String path = path(request);
+        if (path.startsWith("/api/auth/")) {
+            return auth;
+        }
+        if ("POST".equals(request.getMethod()) && pathMatcher.match("/api/polls/*/votes", path)) {
+            return votes;
+        }
+        return reads;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private class Pool {
+        private final String name;
+        private final ConcurrencyLimiter limiter;
+        private final Counter rejectedAuthenticated;
+        private final Counter rejectedAnonymous;
+
+        private Pool(String name, int initialLimit, int maxLimit) {
+            this.name = name;
+            this.limiter = new ConcurrencyLimiter(initialLimit, Math.min(minLimit, initialLimit), maxLimit,
+                    smoothing, backoffRatio, anonymousShare);
+            Gauge.builder("app.concurrency.limit", limiter, ConcurrencyLimiter::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            Gauge.builder("app.concurrency.inflight", limiter, ConcurrencyLimiter::getInFlight)
+                    .description("Requests in flight")
+                    .tag("pool", name)
+                    .register(meterRegistry);
+            this.rejectedAuthenticated = rejectedCounter(name, "true");
+            this.rejectedAnonymous = rejectedCounter(name, "false");
+        }
+
+        private Counter rejectedCounter(String pool, String authenticated) {
+            return Counter.builder("app.concurrency.rejected")
+                    .description("Requests shed with 503 by the concurrency limiter")
+                    .tag("pool", pool)
+                    .tag("authenticated", authenticated)
+                    .register(meterRegistry);
+        }
+    }
+}
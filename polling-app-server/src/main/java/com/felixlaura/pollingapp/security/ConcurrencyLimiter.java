@@ -0,0 +1,111 @@
+package com.felixlaura.pollingapp.security;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on the requests in flight, in the style of a gradient limiter.
+ *
+ * Two averages of the request latency are kept: a short one following the current latency and a long one
+ * standing for the latency without queueing, which drops with faster samples and only creeps up with slower ones.
+ * Every sample moves the limit towards limit * long / short + sqrt(limit): while latency stays at its baseline the limit grows by about its square root,
+ * when requests start queueing (in the database pool, typically) the ratio drops below 1 and the limit shrinks
+ * with it. A failed request (5xx or exception) cuts the limit by backoffRatio right away.
+ * The limit only grows while at least half of it is used, so an idle pool does not drift to maxLimit.
+ *
+ * Requests over the limit are refused, never queued. Anonymous requests only get anonymousShare of the limit,
+ * the rest is kept for authenticated users.
+ */
+public class ConcurrencyLimiter {
+
+    //Weights of a new sample in the short and long latency averages
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 0.002;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double smoothing;
+    private final double backoffRatio;
+    private final double anonymousShare;
+
+    private volatile double limit;
+    private double shortRtt;
+    private double longRtt;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing,
+                              double backoffRatio, double anonymousShare) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= minLimit <= initialLimit <= maxLimit");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.smoothing = smoothing;
+        this.backoffRatio = backoffRatio;
+        this.anonymousShare = anonymousShare;
+    }
+
+    /**
+     * Takes a slot when one is free for this kind of caller. Every successful call must be followed by
+     * onSuccess, onFailure or onIgnore.
+     */
+    public boolean tryAcquire(boolean authenticated) {
+        int allowed = authenticated ? getLimit() : Math.max(1, (int) (getLimit() * anonymousShare));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void onSuccess(long rttNanos) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (shortRtt == 0) {
+                shortRtt = rttNanos;
+                longRtt = rttNanos;
+                return;
+            }
+            shortRtt += (rttNanos - shortRtt) * SHORT_WEIGHT;
+            //The baseline follows faster latency right away and slower latency only slowly,
+            //so a slowdown is not taken as the new normal while the limit is still coming down
+            longRtt += (rttNanos - longRtt) * (rttNanos < longRtt ? SHORT_WEIGHT : LONG_WEIGHT);
+
+            double gradient = Math.max(0.5, Math.min(1.0, longRtt / shortRtt));
+            double target = limit * gradient + Math.sqrt(limit);
+            if (target > limit && inFlightBefore < limit / 2) {
+                return;
+            }
+            setLimit(limit * (1 - smoothing) + target * smoothing);
+        }
+    }
+
+    public void onFailure() {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            setLimit(limit * backoffRatio);
+        }
+    }
+
+    //Releases the slot without a sample, for requests whose latency says nothing about the load
+    public void onIgnore() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -66,4 +66,14 @@ public class JwtTokenProvider {
         }
         return false;
     }
+
+    //Same check as validateToken without logging, for callers that only tell signed-in requests apart
+    public boolean isValidToken(String authToken) {
+        try {
+            Jwts.parser().setSigningKey(jwtSecret).parseClaimsJws(authToken);
+            return true;
+        } catch (JwtException | IllegalArgumentException ex) {
+            return false;
+        }
+    }
 }
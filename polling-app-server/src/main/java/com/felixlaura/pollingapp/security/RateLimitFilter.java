@@ -0,0 +1,185 @@
+package com.felixlaura.pollingapp.security;
+
+import com.felixlaura.pollingapp.monitoring.QueryCounter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RateLimitFilter runs right after JwtAuthenticationFilter and rejects abusive clients with 429 before they
+ * reach the BCrypt check on sign in or the vote transaction.
+ * Votes are limited per user id, auth endpoints per client IP (resolved from X-Forwarded-For by Tomcat,
+ * see server.forward-headers-strategy).
+ *
+ * The work a rejection saves is measured from the requests let through: every allowed request records its time
+ * and SQL statements per route, and every rejection adds the current averages to app.ratelimit.saved.seconds
+ * and app.ratelimit.saved.statements.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitFilter.class);
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final List<Route> routes = new ArrayList<>();
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.rateLimit.enabled}")
+    private boolean enabled;
+
+    @Value("${app.rateLimit.slots}")
+    private int slots;
+
+    @Value("${app.rateLimit.signin.capacity}")
+    private long signinCapacity;
+
+    @Value("${app.rateLimit.signin.refillPerMinute}")
+    private long signinRefillPerMinute;
+
+    @Value("${app.rateLimit.signup.capacity}")
+    private long signupCapacity;
+
+    @Value("${app.rateLimit.signup.refillPerMinute}")
+    private long signupRefillPerMinute;
+
+    @Value("${app.rateLimit.vote.capacity}")
+    private long voteCapacity;
+
+    @Value("${app.rateLimit.vote.refillPerMinute}")
+    private long voteRefillPerMinute;
+
+    @PostConstruct
+    void initRoutes() {
+        //The "saved" tag tells which expensive work a rejected request did not get to do
+        routes.add(new Route("signin", "/api/auth/signin", "bcrypt",
+                new RateLimiter(slots, signinCapacity, signinRefillPerMinute)));
+        routes.add(new Route("signup", "/api/auth/signup", "bcrypt",
+                new RateLimiter(slots, signupCapacity, signupRefillPerMinute)));
+        routes.add(new Route("vote", "/api/polls/*/votes", "vote-transaction",
+                new RateLimiter(slots, voteCapacity, voteRefillPerMinute)));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !"POST".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+
+        for (Route route : routes) {
+            if (!pathMatcher.match(route.pattern, path)) {
+                continue;
+            }
+
+            long waitNanos = route.limiter.tryAcquire(clientKey(request));
+            if (waitNanos > 0) {
+                route.rejected();
+                long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+                logger.debug("Rate limit exceeded on {} for {}", route.name, clientKey(request));
+
+                response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+                response.setHeader("Retry-After", Long.toString(retryAfter));
+                response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+                response.getWriter().write("{\"success\":false,\"message\":\"Too many requests, please try again later\"}");
+                return;
+            }
+            route.doFilter(request, response, filterChain);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private String clientKey(HttpServletRequest request) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal) {
+            return "user:" + ((UserPrincipal) authentication.getPrincipal()).getId();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    private class Route {
+        private final String name;
+        private final String pattern;
+        private final RateLimiter limiter;
+        private final Counter rejected;
+        private final Timer allowedTime;
+        private final DistributionSummary allowedStatements;
+        private final Counter savedSeconds;
+        private final Counter savedStatements;
+
+        private Route(String name, String pattern, String saved, RateLimiter limiter) {
+            this.name = name;
+            this.pattern = pattern;
+            this.limiter = limiter;
+            this.rejected = Counter.builder("app.ratelimit.rejected")
+                    .description("Requests rejected by the rate limiter")
+                    .tag("route", name)
+                    .tag("saved", saved)
+                    .register(meterRegistry);
+            this.allowedTime = Timer.builder("app.ratelimit.allowed")
+                    .description("Time spent on the requests the rate limiter let through")
+                    .tag("route", name)
+                    .register(meterRegistry);
+            this.allowedStatements = DistributionSummary.builder("app.ratelimit.allowed.statements")
+                    .description("SQL statements run by the requests the rate limiter let through")
+                    .tag("route", name)
+                    .register(meterRegistry);
+            this.savedSeconds = Counter.builder("app.ratelimit.saved.seconds")
+                    .description("Estimated request time not spent because of rejections")
+                    .tag("route", name)
+                    .tag("saved", saved)
+                    .register(meterRegistry);
+            this.savedStatements = Counter.builder("app.ratelimit.saved.statements")
+                    .description("Estimated SQL statements not run because of rejections")
+                    .tag("route", name)
+                    .tag("saved", saved)
+                    .register(meterRegistry);
+        }
+
+        private void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+            long started = System.nanoTime();
+            int statementsBefore = QueryCounter.count();
+            try {
+                filterChain.doFilter(request, response);
+            } finally {
+                allowedTime.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                if (QueryCounter.isActive()) {
+                    allowedStatements.record(QueryCounter.count() - statementsBefore);
+                }
+            }
+        }
+
+        //A rejected request is assumed to cost what the allowed ones cost on average
+        private void rejected() {
+            rejected.increment();
+            savedSeconds.increment(allowedTime.mean(TimeUnit.SECONDS));
+            savedStatements.increment(allowedStatements.mean());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.felixlaura.pollingapp.security;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Token bucket rate limiter keyed by a string (user id or client IP).
+ * Buckets live in a fixed size array of slots, so memory stays bounded no matter how many
+ * different clients we see. Every slot is updated with compare-and-set, there are no locks.
+ * When all the slots a key can probe are taken by other keys, a full bucket (an idle client) is replaced.
+ * Buckets below capacity are never replaced, so crowding a throttled client out cannot reset its bucket:
+ * the request is refused until one of the probed buckets is full again.
+ */
+public class RateLimiter {
+
+    private static final int MAX_PROBES = 4;
+
+    private final AtomicReferenceArray<Bucket> slots;
+
+    private final int mask;
+
+    private final long capacity;
+
+    private final double tokensPerNano;
+
+    public RateLimiter(int slotCount, long capacity, long refillPerMinute) {
+        int size = Integer.highestOneBit(Math.max(slotCount, MAX_PROBES) - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / 60_000_000_000d;
+    }
+
+    /**
+     * Tries to take one token for the given key.
+     * Returns 0 when the request is allowed, otherwise the number of nanoseconds
+     * until a token will be available again.
+     */
+    public long tryAcquire(String key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(String key, long now) {
+        int hash = spread(key.hashCode());
+
+        while (true) {
+            int victim = -1;
+            double victimTokens = -1;
+            Bucket victimBucket = null;
+
+            for (int i = 0; i < MAX_PROBES; i++) {
+                int index = (hash + i) & mask;
+                Bucket current = slots.get(index);
+
+                if (current == null || current.key.equals(key)) {
+                    Bucket refilled = current == null ? new Bucket(key, capacity, now) : current.refill(now, capacity, tokensPerNano);
+                    if (refilled.tokens < 1) {
+                        if (current == null || slots.compareAndSet(index, current, refilled)) {
+                            return (long) Math.ceil((1 - refilled.tokens) / tokensPerNano);
+                        }
+                        break;
+                    }
+                    if (slots.compareAndSet(index, current, refilled.take())) {
+                        return 0;
+                    }
+                    break;
+                }
+
+                double tokens = current.refill(now, capacity, tokensPerNano).tokens;
+                if (tokens > victimTokens) {
+                    victim = index;
+                    victimTokens = tokens;
+                    victimBucket = current;
+                }
+            }
+
+            //All probed slots belong to other clients, replace the fullest one only when it is idle
+            if (victimTokens < capacity) {
+                return (long) Math.ceil((capacity - victimTokens) / tokensPerNano);
+            }
+            if (slots.compareAndSet(victim, victimBucket, new Bucket(key, capacity, now).take())) {
+                return 0;
+            }
+        }
+    }
+
+    private static int spread(int h) {
+        return (h ^ (h >>> 16)) * 0x9E3779B9;
+    }
+
+    private static final class Bucket {
+        private final String key;
+        private final double tokens;
+        private final long updatedAt;
+
+        private Bucket(String key, double tokens, long updatedAt) {
+            this.key = key;
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        private Bucket refill(long now, long capacity, double tokensPerNano) {
+            long elapsed = Math.max(0, now - updatedAt);
+            if (elapsed == 0) {
+                return this;
+            }
+            return new Bucket(key, Math.min(capacity, tokens + elapsed * tokensPerNano), now);
+        }
+
+        private Bucket take() {
+            return new Bucket(key, tokens - 1, updatedAt);
+        }
+    }
+}
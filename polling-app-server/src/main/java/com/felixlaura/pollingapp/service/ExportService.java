@@ -0,0 +1,103 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.util.ExportWriter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+
+/**
+ * Streams poll exports straight from the database to the response.
+ * Rows are read with a forward-only, read-only cursor and app.export.fetchSize (Integer.MIN_VALUE makes
+ * MySQL Connector/J stream row by row), and every row is written as soon as it is read. Heap usage does
+ * not depend on the size of the export.
+ */
+@Service
+public class ExportService {
+
+    //Live and archived votes of one poll, then one row per choice of each ballot of a MULTIPLE or RANKED poll.
+    //Ballot rows repeat the ballot id, rank is the position of the choice in a RANKED ballot.
+    private static final String POLL_VOTES_SQL =
+            "SELECT v.id, v.choice_id, c.text, v.user_id, v.created_at, NULL FROM votes v " +
+            "JOIN choices c ON c.id = v.choice_id WHERE v.poll_id = ? " +
+            "UNION ALL SELECT a.id, a.choice_id, c.text, a.user_id, a.created_at, NULL FROM archived_votes a " +
+            "JOIN choices c ON c.id = a.choice_id WHERE a.poll_id = ? " +
+            "UNION ALL SELECT b.id, c.id, c.text, b.user_id, b.created_at, " +
+            "IF(p.poll_type = 'RANKED', FIND_IN_SET(c.id, b.choice_ids), NULL) FROM ballots b " +
+            "JOIN polls p ON p.id = b.poll_id " +
+            "JOIN choices c ON c.poll_id = b.poll_id AND FIND_IN_SET(c.id, b.choice_ids) > 0 WHERE b.poll_id = ?";
+
+    //Final count of every choice: live votes plus the count kept when the poll was archived for SINGLE polls,
+    //the ballots approving the choice for MULTIPLE polls, the ballots ranking it first for RANKED polls
+    private static final String RESULTS_SQL =
+            "SELECT p.id, p.question, p.poll_type, p.expiration_date_time, c.id, c.text, CASE p.poll_type " +
+            "WHEN 'MULTIPLE' THEN (SELECT COUNT(*) FROM ballots b WHERE b.poll_id = p.id AND FIND_IN_SET(c.id, b.choice_ids) > 0) " +
+            "WHEN 'RANKED' THEN (SELECT COUNT(*) FROM ballots b WHERE b.poll_id = p.id AND FIND_IN_SET(c.id, b.choice_ids) = 1) " +
+            "ELSE c.archived_vote_count + (SELECT COUNT(*) FROM votes v WHERE v.poll_id = p.id AND v.choice_id = c.id) END " +
+            "FROM polls p JOIN choices c ON c.poll_id = p.id ";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.export.fetchSize}")
+    private int fetchSize;
+
+    public void exportPollVotes(Long pollId, ExportWriter writer) throws IOException {
+        writer.header("voteId", "choiceId", "choiceText", "userId", "createdAt", "rank");
+        stream(POLL_VOTES_SQL, new Object[]{pollId, pollId, pollId}, rs -> writer.row(
+                rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getLong(4), instant(rs.getTimestamp(5)), nullableLong(rs, 6)), writer);
+    }
+
+    //Results of the polls created by the given user, or of every poll when creatorId is null
+    public void exportPollResults(Long creatorId, ExportWriter writer) throws IOException {
+        writer.header("pollId", "question", "pollType", "expirationDateTime", "choiceId", "choiceText", "voteCount");
+        String sql = creatorId == null ? RESULTS_SQL : RESULTS_SQL + "WHERE p.create_by = ?";
+        Object[] args = creatorId == null ? new Object[0] : new Object[]{creatorId};
+        stream(sql, args, rs -> writer.row(
+                rs.getLong(1), rs.getString(2), rs.getString(3), instant(rs.getTimestamp(4)), rs.getLong(5), rs.getString(6),
+                rs.getLong(7)), writer);
+    }
+
+    private void stream(String sql, Object[] args, RowWriter rowWriter, ExportWriter writer) throws IOException {
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    rowWriter.write(rs);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        writer.flush();
+    }
+
+    private static Object instant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+
+    private static Long nullableLong(ResultSet rs, int column) throws SQLException {
+        long value = rs.getLong(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,37 @@
+package com.felixlaura.pollingapp.service;
+
+import java.time.Instant;
+
+/**
+ * Published on every node by PollLifecycleScheduler when a poll opens for votes or expires.
+ * Listen with @EventListener, handlers run on the scheduler thread and must be quick.
+ */
+public class PollLifecycleEvent {
+
+    public enum Type {
+        OPENED,
+        EXPIRED
+    }
+
+    private final Long pollId;
+    private final Type type;
+    private final Instant firedAt;
+
+    public PollLifecycleEvent(Long pollId, Type type, Instant firedAt) {
+        this.pollId = pollId;
+        this.type = type;
+        this.firedAt = firedAt;
+    }
+
+    public Long getPollId() {
+        return pollId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Instant getFiredAt() {
+        return firedAt;
+    }
+}
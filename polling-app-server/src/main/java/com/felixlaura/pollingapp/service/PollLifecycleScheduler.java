@@ -0,0 +1,140 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.cache.CacheBus;
+import com.felixlaura.pollingapp.cache.CacheEvent;
+import com.felixlaura.pollingapp.cache.CacheEventListener;
+import com.felixlaura.pollingapp.util.TimingWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fires a PollLifecycleEvent when a poll opens (polls created with a future startDateTime) and when it expires.
+ * Every node loads the pending deadlines from the polls table at startup into a TimingWheel and adds the polls
+ * created afterwards from the POLL_CREATED events of the cache bus, which carry the deadlines, so each node
+ * fires the events itself without reading the poll back. A poll both loaded and received as an event while
+ * the node starts is scheduled once, the wheel keeps one deadline per poll and kind.
+ */
+@Service
+public class PollLifecycleScheduler implements CacheEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(PollLifecycleScheduler.class);
+
+    private static final int OPENED = 0;
+    private static final int EXPIRED = 1;
+
+    private static final String PENDING_POLLS_SQL =
+            "SELECT id, start_date_time, expiration_date_time FROM polls WHERE expiration_date_time > ?";
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "poll-lifecycle");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private TimingWheel wheel;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.lifecycle.tickMs}")
+    private long tickMs;
+
+    @Value("${app.lifecycle.fetchSize}")
+    private int fetchSize;
+
+    @PostConstruct
+    void start() {
+        wheel = new TimingWheel(tickMs, System.currentTimeMillis());
+        cacheBus.subscribe(this);
+        //Loading runs on the ticker thread, startup does not wait for it and no tick runs before it is done
+        ticker.execute(this::loadPendingPolls);
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stop() {
+        ticker.shutdownNow();
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        if (event.getType() == CacheEvent.Type.POLL_CREATED) {
+            schedule(event.getPollId(), event.getStartDateTime(), event.getExpirationDateTime());
+        }
+    }
+
+    private void schedule(long pollId, Instant startDateTime, Instant expirationDateTime) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            if (startDateTime != null && startDateTime.toEpochMilli() > now) {
+                wheel.schedule(startDateTime.toEpochMilli(), pollId, OPENED);
+            }
+            wheel.schedule(expirationDateTime.toEpochMilli(), pollId, EXPIRED);
+        }
+    }
+
+    private void loadPendingPolls() {
+        long started = System.currentTimeMillis();
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(PENDING_POLLS_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, new Timestamp(started));
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                Timestamp startDateTime = rs.getTimestamp(2);
+                schedule(rs.getLong(1), startDateTime != null ? startDateTime.toInstant() : null, rs.getTimestamp(3).toInstant());
+            });
+            logger.info("Scheduled {} poll lifecycle deadlines in {} ms", pending(), System.currentTimeMillis() - started);
+        } catch (RuntimeException ex) {
+            logger.error("Could not load the pending poll deadlines", ex);
+        }
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        Instant firedAt = Instant.ofEpochMilli(now);
+        List<PollLifecycleEvent> events = new ArrayList<>();
+        synchronized (this) {
+            wheel.advance(now, (pollId, kind) -> events.add(new PollLifecycleEvent(pollId,
+                    kind == OPENED ? PollLifecycleEvent.Type.OPENED : PollLifecycleEvent.Type.EXPIRED, firedAt)));
+        }
+
+        //Listeners run outside the lock so polls can still be scheduled meanwhile
+        for (PollLifecycleEvent event : events) {
+            try {
+                eventPublisher.publishEvent(event);
+            } catch (RuntimeException ex) {
+                logger.error("Poll lifecycle listener failed on {} of poll {}", event.getType(), event.getPollId(), ex);
+            }
+        }
+    }
+
+    public synchronized int pending() {
+        return wheel.size();
+    }
+}
@@ -1,35 +1,57 @@
 package com.felixlaura.pollingapp.service;
 
+import com.felixlaura.pollingapp.cache.BallotTallies;
+import com.felixlaura.pollingapp.cache.CacheBus;
+import com.felixlaura.pollingapp.cache.CacheEvent;
+import com.felixlaura.pollingapp.cache.CachedTotals;
+import com.felixlaura.pollingapp.cache.RecentKeyCache;
+import com.felixlaura.pollingapp.cache.UserVoteIndex;
+import com.felixlaura.pollingapp.cache.VoteTallyStore;
 import com.felixlaura.pollingapp.exception.BadRequestException;
 import com.felixlaura.pollingapp.exception.ResourceNotFoundException;
 import com.felixlaura.pollingapp.model.*;
+import com.felixlaura.pollingapp.monitoring.PollPageEvent;
+import com.felixlaura.pollingapp.monitoring.QueryCounter;
+import com.felixlaura.pollingapp.monitoring.VoteCastEvent;
 import com.felixlaura.pollingapp.payload.PagedResponse;
 import com.felixlaura.pollingapp.payload.PollRequest;
 import com.felixlaura.pollingapp.payload.PollResponse;
 import com.felixlaura.pollingapp.payload.VoteRequest;
+import com.felixlaura.pollingapp.repository.BallotRepository;
 import com.felixlaura.pollingapp.repository.PollRepository;
 import com.felixlaura.pollingapp.repository.UserRepository;
 import com.felixlaura.pollingapp.repository.VoteRepository;
 import com.felixlaura.pollingapp.security.UserPrincipal;
 import com.felixlaura.pollingapp.util.AppConstants;
+import com.felixlaura.pollingapp.util.LongLongMap;
+import com.felixlaura.pollingapp.util.LongObjectMap;
 import com.felixlaura.pollingapp.util.ModelMapper;
+import com.felixlaura.pollingapp.util.SingleFlight;
+import com.felixlaura.pollingapp.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.util.LambdaSafe;
-import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import jakarta.annotation.PostConstruct;
 import java.time.Duration;
 import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.Currency;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
@@ -51,40 +73,178 @@ public class PollService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private BallotRepository ballotRepository;
+
+    @Autowired
+    private BallotTallies ballotTallies;
+
+    @Autowired
+    private PollViewService pollViewService;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private UserVoteIndex userVoteIndex;
+
+    @Autowired
+    private VoteTallyStore voteTallyStore;
+
+    @Value("${app.idempotency.maxKeys}")
+    private int idempotencyMaxKeys;
+
+    @Value("${app.idempotency.ttlMs}")
+    private long idempotencyTtlMs;
+
+    @Value("${app.unvoted.overfetch}")
+    private int unvotedOverfetch;
+
+    @Value("${app.unvoted.maxScan}")
+    private int unvotedMaxScan;
+
+    //Votes recently cast per "userId:Idempotency-Key"
+    private RecentKeyCache<RecentVote> recentVotes;
+
     private static final Logger logger = LoggerFactory.getLogger(PollService.class);
 
+    @Value("${app.singleFlight.timeoutMs}")
+    private long singleFlightTimeoutMs;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Identical concurrent loads share one database round, see SingleFlight
+    private SingleFlight<Long, PollSnapshot> pollLoads;
+    private SingleFlight<List<Long>, LongLongMap> choiceVoteCountLoads;
+    private SingleFlight<List<Long>, LongObjectMap<User>> creatorLoads;
+
+    @Autowired
+    private CachedTotals cachedTotals;
+
+    @Value("${app.totals.allPolls}")
+    private String allPollsTotalsMode;
+
+    @Value("${app.totals.pollsCreatedBy}")
+    private String pollsCreatedByTotalsMode;
+
+    private TotalsMode allPollsTotals;
+    private TotalsMode pollsCreatedByTotals;
+
+    @PostConstruct
+    void init() {
+        allPollsTotals = TotalsMode.valueOf(allPollsTotalsMode.trim().toUpperCase());
+        pollsCreatedByTotals = TotalsMode.valueOf(pollsCreatedByTotalsMode.trim().toUpperCase());
+        recentVotes = new RecentKeyCache<>(idempotencyMaxKeys, idempotencyTtlMs);
+        pollLoads = new SingleFlight<>("poll", singleFlightTimeoutMs, meterRegistry);
+        choiceVoteCountLoads = new SingleFlight<>("choiceVoteCounts", singleFlightTimeoutMs, meterRegistry);
+        creatorLoads = new SingleFlight<>("pollCreators", singleFlightTimeoutMs, meterRegistry);
+    }
+
     public PagedResponse<PollResponse> getAllPolls(UserPrincipal currentUser, int page, int size){
+        return recordPage("all", page, size, () -> assembleAllPolls(currentUser, page, size));
+    }
+
+    private PagedResponse<PollResponse> assembleAllPolls(UserPrincipal currentUser, int page, int size){
         validatePageNumberAndSize(page, size);
 
         //Retrieve polls
         Pageable pageable = PageRequest.of(page, size, Sort.Direction.ASC, "createdAt");
-        Page<Poll> polls = pollRepository.findAll(pageable);
+        Slice<Poll> polls = allPollsTotals == TotalsMode.EXACT ? pollRepository.findAll(pageable) : pollRepository.findAllBy(pageable);
 
-        if(polls.getTotalElements() == 0){
-            return new PagedResponse<>(Collections.emptyList(),polls.getNumber(),
-                    polls.getSize(), polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
+        if(!polls.hasContent()){
+            return toPagedResponse(Collections.emptyList(), polls, allPollsTotals, CachedTotals.ALL_POLLS, pollRepository::count);
         }
 
         //Map Polls to PollResponses containing vote count and poll creator details
         List<Long> pollIds = polls.map(Poll::getId).getContent();
-        Map<Long, Long> choiceVoteCountMap = getChoiceVoteCountMap(pollIds);
-        Map<Long, Long> pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
-        Map<Long, User> creatorMap = getPollCreatorMap(polls.getContent());
+        LongLongMap choiceVoteCountMap = getChoiceVoteCountMap(polls.getContent());
+        LongLongMap pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
+        LongObjectMap<User> creatorMap = getPollCreatorMap(polls.getContent());
 
-        List<PollResponse> pollResponses = polls.map(poll->{
-           return ModelMapper.mapPollToPollResponse(poll,
-                   choiceVoteCountMap,
-                   creatorMap.get(poll.getCreateBy()),
-                   pollUserVoteMap == null ? null : pollUserVoteMap.getOrDefault(poll.getId(), null
-                   ));
-        }).getContent();
+        List<PollResponse> pollResponses = mapPollsToPollResponses(polls.getContent(), choiceVoteCountMap, creatorMap, pollUserVoteMap, currentUser);
 
 
-        return new PagedResponse<>(pollResponses, polls.getNumber(), polls.getSize(),
-                polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
+        return toPagedResponse(pollResponses, polls, allPollsTotals, CachedTotals.ALL_POLLS, pollRepository::count);
+    }
+
+    /**
+     * Polls the user has not voted in, in listing order. Poll keys are read in batches of
+     * size * app.unvoted.overfetch from the (created_at, id) index and filtered against the UserVoteIndex,
+     * until the page is full or app.unvoted.maxScan keys were looked at. The returned cursor continues
+     * right after the last key looked at, it is null once the listing is exhausted.
+     */
+    public PagedResponse<PollResponse> getUnvotedPolls(UserPrincipal currentUser, String cursor, int size){
+        return recordPage("unvoted", 0, size, () -> assembleUnvotedPolls(currentUser, cursor, size));
+    }
+
+    private PagedResponse<PollResponse> assembleUnvotedPolls(UserPrincipal currentUser, String cursor, int size){
+        validatePageNumberAndSize(0, size);
+
+        Instant afterCreatedAt = Instant.EPOCH;
+        long afterId = 0;
+        if(cursor != null){
+            try{
+                String[] position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(",");
+                afterCreatedAt = Instant.parse(position[0]);
+                afterId = Long.parseLong(position[1]);
+            }catch (RuntimeException ex){
+                throw new BadRequestException("Invalid cursor");
+            }
+        }
+
+        int batchSize = Math.max(1, size * unvotedOverfetch);
+        List<Long> pollIds = new ArrayList<>(size);
+        boolean exhausted = false;
+        int scanned = 0;
+        while(pollIds.size() < size && scanned < unvotedMaxScan){
+            List<PollKey> keys = pollRepository.findKeysAfter(afterCreatedAt, afterId, PageRequest.of(0, batchSize));
+            List<Long> keyIds = new ArrayList<>(keys.size());
+            for(PollKey key : keys){
+                keyIds.add(key.getId());
+            }
+            LongLongMap voted = userVoteIndex.getVotedChoices(currentUser.getId(), keyIds);
+
+            int consumed = 0;
+            for(PollKey key : keys){
+                if(pollIds.size() == size){
+                    break;
+                }
+                consumed++;
+                afterCreatedAt = key.getCreatedAt();
+                afterId = key.getId();
+                if(!voted.containsKey(key.getId())){
+                    pollIds.add(key.getId());
+                }
+            }
+            scanned += consumed;
+            if(keys.size() < batchSize){
+                exhausted = consumed == keys.size();
+                break;
+            }
+        }
+
+        String nextCursor = exhausted ? null : Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((afterCreatedAt + "," + afterId).getBytes(StandardCharsets.UTF_8));
+
+        List<PollResponse> pollResponses = Collections.emptyList();
+        if(!pollIds.isEmpty()){
+            List<Poll> polls = pollRepository.findByIdIn(pollIds, Sort.by(Sort.Direction.ASC, "createdAt", "id"));
+            pollResponses = mapPollsToPollResponses(polls, getChoiceVoteCountMap(polls), getPollCreatorMap(polls), null, currentUser);
+        }
+
+        //The total is not known without the anti-join this listing avoids
+        PagedResponse<PollResponse> response = new PagedResponse<>(pollResponses, 0, size, -1, -1, nextCursor == null);
+        response.setTotalExact(false);
+        response.setNextCursor(nextCursor);
+        return response;
     }
 
     public PagedResponse<PollResponse> getPollsCreatedBy(String username, UserPrincipal currentUser, int page, int size){
+        return recordPage("createdBy", page, size, () -> assemblePollsCreatedBy(username, currentUser, page, size));
+    }
+
+    private PagedResponse<PollResponse> assemblePollsCreatedBy(String username, UserPrincipal currentUser, int page, int size){
         validatePageNumberAndSize(page, size);
 
         User user = userRepository.findByUsername(username)
@@ -92,152 +252,226 @@ public class PollService {
 
         //Retrieve all polls created by specific username
         Pageable pageable = PageRequest.of(page, size, Sort.Direction.ASC, "createdAt");
-        Page<Poll> polls = pollRepository.findByCreateBy(user.getId(), pageable);
-
-        //if number of polls by user is equal to 0
-        if(polls.getTotalElements() == 0){
-            return new PagedResponse<>(Collections.emptyList(), polls.getNumber(),
-                    polls.getSize(), polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
+        Slice<Poll> polls = pollsCreatedByTotals == TotalsMode.EXACT
+                ? pollRepository.findByCreateBy(user.getId(), pageable)
+                : pollRepository.findSliceByCreateBy(user.getId(), pageable);
+        String totalKey = CachedTotals.pollsCreatedBy(user.getId());
+
+        //if there is no poll by user on this page
+        if(!polls.hasContent()){
+            return toPagedResponse(Collections.emptyList(), polls, pollsCreatedByTotals, totalKey,
+                    () -> pollRepository.countByCreateBy(user.getId()));
         }
 
         //If polls is not equal to 0, we map Polls to PollResponse
         //containing vote counts and use details
         List<Long> pollIds = polls.map(Poll::getId).getContent();
-        Map<Long,Long> choiceVoteCountMap = getChoiceVoteCountMap(pollIds);
-        Map<Long, Long> pollUserVoteMap = getPollUserVoteMap(currentUser,pollIds);
+        LongLongMap choiceVoteCountMap = getChoiceVoteCountMap(polls.getContent());
+        LongLongMap pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
+        LongObjectMap<User> creatorMap = new LongObjectMap<>(1);
+        creatorMap.put(user.getId(), user);
 
-        List<PollResponse> pollResponses = polls.map(poll ->{
-            return ModelMapper.mapPollToPollResponse(poll,
-                    choiceVoteCountMap,
-                    user,
-                    pollUserVoteMap == null ? null : pollUserVoteMap.getOrDefault(poll.getId(), null));
-        }).getContent();
+        List<PollResponse> pollResponses = mapPollsToPollResponses(polls.getContent(), choiceVoteCountMap, creatorMap, pollUserVoteMap, currentUser);
 
-        return new PagedResponse<>(pollResponses, polls.getNumber(),polls.getSize(),
-                polls.getTotalElements(), polls.getTotalPages(), polls.isLast());
+        return toPagedResponse(pollResponses, polls, pollsCreatedByTotals, totalKey,
+                () -> pollRepository.countByCreateBy(user.getId()));
     }
 
     //Get Polls voted by user
     public PagedResponse<PollResponse> getPollsVotedBy(String username, UserPrincipal currentUser, int page, int size){
+        return recordPage("votedBy", page, size, () -> assemblePollsVotedBy(username, currentUser, page, size));
+    }
+
+    private PagedResponse<PollResponse> assemblePollsVotedBy(String username, UserPrincipal currentUser, int page, int size){
         validatePageNumberAndSize(page, size);
 
         User user = userRepository.findByUsername(username)
                 .orElseThrow(()->new ResourceNotFoundException("User", "username", username));
 
-        Pageable pageable = PageRequest.of(page, size, Sort.Direction.ASC, "createdAt");
-        Page<Long> userVotedPollIds = voteRepository.findVotedPollIdsByUserId(user.getId(), pageable);
+        //Voted polls come from the in-memory vote index, oldest vote first
+        long totalElements = userVoteIndex.countVotes(user.getId());
+        int totalPages = size == 0 ? 1 : (int) Math.ceil((double) totalElements / size);
+        boolean last = page + 1 >= totalPages;
 
-        if(userVotedPollIds.getTotalElements() == 0){
-            return new PagedResponse<>(Collections.emptyList(),
-                    userVotedPollIds.getNumber(),
-                    userVotedPollIds.getSize(),
-                    userVotedPollIds.getTotalElements(),
-                    userVotedPollIds.getTotalPages(),
-                    userVotedPollIds.isLast());
+        if(totalElements == 0){
+            return new PagedResponse<>(Collections.emptyList(), page, size, totalElements, totalPages, last);
         }
 
         //Retrieve all poll details from the voted pollIds
-        List<Long> pollIds = userVotedPollIds.getContent();
+        List<Long> pollIds = userVoteIndex.getVotedPollIds(user.getId(), (long) page * size, size);
+        if(pollIds.isEmpty()){
+            return new PagedResponse<>(Collections.emptyList(), page, size, totalElements, totalPages, last);
+        }
 
         Sort sort = Sort.by(Sort.Direction.DESC, "createdAt");
         List<Poll> polls = pollRepository.findByIdIn(pollIds, sort);
 
         //Map polls to PollResponse containing vote counts and poll creator details
-        Map<Long, Long> choiceVoteCountMap = getChoiceVoteCountMap(pollIds);
-        Map<Long, Long> pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
-        Map<Long, User> creatorMap = getPollCreatorMap(polls);
-
-        List<PollResponse> pollResponses = polls.stream().map(poll->{
-                    return ModelMapper.mapPollToPollResponse(poll,
-                            choiceVoteCountMap,
-                            creatorMap.get(poll.getCreateBy()),
-                            pollUserVoteMap == null ? null : pollUserVoteMap.getOrDefault(poll.getId(), null));
-        }).collect(Collectors.toList());
-
-        return new PagedResponse<>(pollResponses,
-                userVotedPollIds.getNumber(),
-                userVotedPollIds.getSize(),
-                userVotedPollIds.getTotalElements(),
-                userVotedPollIds.getTotalPages(),
-                userVotedPollIds.isLast());
+        LongLongMap choiceVoteCountMap = getChoiceVoteCountMap(polls);
+        LongLongMap pollUserVoteMap = getPollUserVoteMap(currentUser, pollIds);
+        LongObjectMap<User> creatorMap = getPollCreatorMap(polls);
+
+        List<PollResponse> pollResponses = mapPollsToPollResponses(polls, choiceVoteCountMap, creatorMap, pollUserVoteMap, currentUser);
+
+        return new PagedResponse<>(pollResponses, page, size, totalElements, totalPages, last);
     }
 
     public Poll createPoll(PollRequest pollRequest){
         Poll poll = new Poll();
         poll.setQuestion(pollRequest.getQuestion());
 
-        poll.getChoices().forEach(choiceRequest ->{
+        pollRequest.getChoices().forEach(choiceRequest ->{
             poll.addChoice(new Choice(choiceRequest.getText()));
         });
 
+        //MULTIPLE polls allow every choice unless maxChoices says otherwise, RANKED polls rank up to every choice
+        PollType type = pollRequest.getType() != null ? pollRequest.getType() : PollType.SINGLE;
+        int choiceCount = pollRequest.getChoices().size();
+        int maxChoices = type == PollType.SINGLE ? 1 : choiceCount;
+        if(pollRequest.getMaxChoices() != null){
+            if(type != PollType.MULTIPLE){
+                throw new BadRequestException("maxChoices only applies to MULTIPLE polls");
+            }
+            if(pollRequest.getMaxChoices() < 1 || pollRequest.getMaxChoices() > choiceCount){
+                throw new BadRequestException("maxChoices must be between 1 and the number of choices");
+            }
+            maxChoices = pollRequest.getMaxChoices();
+        }
+        poll.setType(type);
+        poll.setMaxChoices(maxChoices);
+
+        //Polls scheduled in the future last their length from their start
         Instant now = Instant.now();
-        Instant expirationDateTime = now.plus(Duration.ofDays(pollRequest.getPollLength().getDays()))
+        Instant start = now;
+        if(pollRequest.getStartDateTime() != null){
+            if(!pollRequest.getStartDateTime().isAfter(now)){
+                throw new BadRequestException("startDateTime must be in the future");
+            }
+            start = pollRequest.getStartDateTime();
+            poll.setStartDateTime(start);
+        }
+        Instant expirationDateTime = start.plus(Duration.ofDays(pollRequest.getPollLength().getDays()))
                 .plus(Duration.ofHours((pollRequest.getPollLength().getHours())));
 
         poll.setExpirationDateTime(expirationDateTime);
 
-        return pollRepository.save(poll);
+        Poll result = pollRepository.save(poll);
+        cacheBus.publish(CacheEvent.pollCreated(result.getId(), result.getCreateBy(),
+                result.getStartDateTime(), result.getExpirationDateTime()));
+
+        return result;
     }
 
     public PollResponse getPollById(Long pollId, UserPrincipal currentUser){
+        //Concurrent requests for the same poll share one load, only the user's own choice differs
+        PollSnapshot snapshot = pollLoads.load(pollId, () -> loadPollSnapshot(pollId));
+
+        //Retrieve vote done by logged in user
+        Long userVoteChoiceId = null;
+        if(currentUser != null){
+            userVoteChoiceId = selectedChoice(userVoteIndex.getVotedChoices(currentUser.getId(), Collections.singletonList(pollId)), pollId);
+        }
+
+        PollResponse pollResponse = withBallotResult(snapshot.poll, ModelMapper.mapPollToPollResponse(snapshot.poll,
+                snapshot.choiceVotesMap, snapshot.creator, userVoteChoiceId, Instant.now()), currentUser);
+
+        //Estimates kept in memory, present once the poll was viewed on this node
+        long[] views = pollViewService.getViews(pollId);
+        if(views != null){
+            pollResponse.setViews(views[0]);
+            pollResponse.setUniqueViewers(views[1]);
+        }
+        return pollResponse;
+    }
+
+    private PollSnapshot loadPollSnapshot(Long pollId) {
         Poll poll = pollRepository.findById(pollId).orElseThrow(
                 ()->new ResourceNotFoundException("Poll", "id",pollId)
         );
 
         //Retrieve Vote Count of every choice belonging to the current poll
-        List<ChoiceVoteCount> votes = voteRepository.countByPollIdGroupByChoiceId(pollId);
-
-        Map<Long, Long> choiceVotesMap = votes.stream()
-                .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
+        LongLongMap choiceVotesMap = getChoiceVoteCountMap(poll);
 
         //Retrieve poll creator details
         User creator = userRepository.findById(poll.getCreateBy())
                 .orElseThrow(()-> new ResourceNotFoundException("User", "id", poll.getCreateBy()));
 
-        //Retrieve vote done by logged in user
-        Vote userVote = null;
-        if(currentUser != null){
-            userVote = voteRepository.findByUserIdAndPollId(currentUser.getId(), pollId);
-        }
+        return new PollSnapshot(poll, choiceVotesMap, creator);
+    }
 
-        return ModelMapper.mapPollToPollResponse(poll, choiceVotesMap,
-                creator, userVote != null ? userVote.getChoice().getId(): null);
+    /**
+     * Votes are idempotent: the insert leaves an existing vote as it is (ON DUPLICATE KEY UPDATE id = id), and a vote for the choice the user already selected
+     * returns the current poll as the first attempt did. Retries carrying the same Idempotency-Key within
+     * app.idempotency.ttlMs skip the insert altogether.
+     * Every attempt is recorded as a VoteCastEvent.
+     * MULTIPLE and RANKED polls take voteRequest.choiceIds and store them as one ballot, see castBallot.
+     */
+    public PollResponse castVoteAndGetUpdatedPoll(Long pollId, VoteRequest voteRequest, UserPrincipal currentUser, String idempotencyKey) {
+        VoteCastEvent event = new VoteCastEvent();
+        int queriesBefore = QueryCounter.count();
+        event.begin();
+        try {
+            return castVote(pollId, voteRequest, currentUser, idempotencyKey, event);
+        } finally {
+            event.pollId = pollId;
+            event.choiceId = voteRequest.getChoiceId();
+            event.queries = QueryCounter.count() - queriesBefore;
+            event.commit();
+        }
     }
 
-    public PollResponse castVoteAndGetUpdatedPoll(Long pollId, VoteRequest voteRequest, UserPrincipal currentUser) {
+    private PollResponse castVote(Long pollId, VoteRequest voteRequest, UserPrincipal currentUser, String idempotencyKey,
+                                  VoteCastEvent event) {
+
+        String recentKey = idempotencyKey != null ? currentUser.getId() + ":" + idempotencyKey : null;
+        RecentVote recentVote = recentKey != null ? recentVotes.get(recentKey) : null;
+        if(recentVote != null && (recentVote.pollId != pollId || recentVote.choiceId != voteRequest.getChoiceId())){
+            throw new BadRequestException("This Idempotency-Key was already used for another vote");
+        }
 
         Poll poll = pollRepository.findById(pollId)
                 .orElseThrow(()-> new ResourceNotFoundException("Poll", "id", pollId));
 
-        if(poll.getExpirationDateTime().isBefore(Instant.now())){
-            throw new BadRequestException("Sorry! This Poll has already expired");
+        if(poll.getType() != PollType.SINGLE){
+            return castBallot(poll, voteRequest, currentUser, recentKey, recentVote, event);
         }
 
-        User user = userRepository.getOne(currentUser.getId());
-
         Choice selectedChoice = poll.getChoices()
                 .stream()
                 .filter(choice -> choice.getId().equals(voteRequest.getChoiceId()))
                 .findFirst()
                 .orElseThrow(()->new ResourceNotFoundException("Choice", "id", voteRequest.getChoiceId()));
 
-        Vote vote = new Vote();
-        vote.setPoll(poll);
-        vote.setUser(user);
-        vote.setChoice(selectedChoice);
-
-        try{
-            vote = voteRepository.save(vote);
-        }catch (DataIntegrityViolationException ex){
-            logger.info("User {} has already voted in Poll {}", currentUser.getId(), pollId);
-            throw new BadRequestException("Sorry! You have already cast your vote in this poll");
+        if(recentVote != null){
+            event.outcome = VoteCastEvent.REPLAYED;
+        } else {
+            Instant now = Instant.now();
+            checkOpenForVotes(poll, now);
+
+            long voteId = SnowflakeIdGenerator.nextId();
+            int inserted = voteRepository.insertIfAbsent(voteId, pollId, selectedChoice.getId(),
+                    currentUser.getId(), now);
+            if(inserted == 0){
+                //A retry of a vote that went through is answered like the first attempt, a different choice is refused
+                Long votedChoiceId = voteRepository.findChoiceIdByUserIdAndPollId(currentUser.getId(), pollId);
+                if(!selectedChoice.getId().equals(votedChoiceId)){
+                    logger.info("User {} has already voted in Poll {}", currentUser.getId(), pollId);
+                    throw new BadRequestException("Sorry! You have already cast your vote in this poll");
+                }
+                event.outcome = VoteCastEvent.DUPLICATE;
+            } else {
+                event.outcome = VoteCastEvent.INSERTED;
+                //Let the caches of every node know about the new vote
+                cacheBus.publish(CacheEvent.voteCast(voteId, pollId, selectedChoice.getId(), currentUser.getId()));
+            }
+
+            if(recentKey != null){
+                recentVotes.put(recentKey, new RecentVote(pollId, selectedChoice.getId()));
+            }
         }
 
         //Retrieve Vote counts of every choice belonging to the current poll
-        List<ChoiceVoteCount> votes = voteRepository.countByPollIdGroupByChoiceId(pollId);
-
-        Map<Long, Long> choiceVotesMap = votes.stream()
-                .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
+        LongLongMap choiceVotesMap = getChoiceVoteCountMap(poll);
 
         //Retrieve poll creator details
         User creator = userRepository.findById(poll.getCreateBy())
@@ -246,46 +480,255 @@ public class PollService {
         return ModelMapper.mapPollToPollResponse(poll,
                 choiceVotesMap,
                 creator,
-                vote.getChoice().getId());
+                selectedChoice.getId(),
+                Instant.now());
+
+    }
+
+    /**
+     * Ballots follow the rules of votes: one per (poll_id, user_id), a repeated identical ballot is answered
+     * like the first one and a different one is refused. The choices of a MULTIPLE ballot are stored in choice id order,
+     * a RANKED ballot keeps the ranking order and may rank only some of the choices.
+     */
+    private PollResponse castBallot(Poll poll, VoteRequest voteRequest, UserPrincipal currentUser, String recentKey,
+                                    RecentVote recentVote, VoteCastEvent event) {
+        List<Long> requested = voteRequest.getChoiceIds();
+        if(requested == null || requested.isEmpty()){
+            throw new BadRequestException("Please select at least one choice");
+        }
+        long[] ballot = new long[requested.size()];
+        for(int i = 0; i < ballot.length; i++){
+            Long choiceId = requested.get(i);
+            if(choiceId == null || poll.getChoices().stream().noneMatch(choice -> choice.getId().equals(choiceId))){
+                throw new ResourceNotFoundException("Choice", "id", choiceId);
+            }
+            ballot[i] = choiceId;
+        }
+        if(Arrays.stream(ballot).distinct().count() != ballot.length){
+            throw new BadRequestException("A choice can only be selected once");
+        }
+        if(poll.getType() == PollType.MULTIPLE){
+            if(ballot.length > poll.getMaxChoices()){
+                throw new BadRequestException("Sorry! This Poll allows at most " + poll.getMaxChoices() + " choices");
+            }
+            Arrays.sort(ballot);
+        }
+        String choiceIds = Arrays.stream(ballot).mapToObj(Long::toString).collect(Collectors.joining(","));
+
+        if(recentVote != null && !choiceIds.equals(recentVote.choiceIds)){
+            throw new BadRequestException("This Idempotency-Key was already used for another vote");
+        }
+
+        if(recentVote != null){
+            event.outcome = VoteCastEvent.REPLAYED;
+        } else {
+            Instant now = Instant.now();
+            checkOpenForVotes(poll, now);
+
+            long ballotId = SnowflakeIdGenerator.nextId();
+            int inserted = ballotRepository.insertIfAbsent(ballotId, poll.getId(), currentUser.getId(), choiceIds, now);
+            if(inserted == 0){
+                if(!choiceIds.equals(ballotRepository.findChoiceIdsByUserIdAndPollId(currentUser.getId(), poll.getId()))){
+                    logger.info("User {} has already voted in Poll {}", currentUser.getId(), poll.getId());
+                    throw new BadRequestException("Sorry! You have already cast your vote in this poll");
+                }
+                event.outcome = VoteCastEvent.DUPLICATE;
+            } else {
+                event.outcome = VoteCastEvent.INSERTED;
+                cacheBus.publish(CacheEvent.ballotCast(ballotId, poll.getId(), currentUser.getId(), ballot));
+            }
+
+            if(recentKey != null){
+                recentVotes.put(recentKey, new RecentVote(poll.getId(), voteRequest.getChoiceId(), choiceIds));
+            }
+        }
+
+        User creator = userRepository.findById(poll.getCreateBy())
+                .orElseThrow(()->new ResourceNotFoundException("User", "id", poll.getCreateBy()));
+
+        //The votes table holds nothing for this poll, the counts and the user's choices come from the ballot result
+        return withBallotResult(poll, ModelMapper.mapPollToPollResponse(poll, new LongLongMap(0), creator, null,
+                Instant.now()), currentUser);
+    }
+
+    private static void checkOpenForVotes(Poll poll, Instant now) {
+        if(poll.getExpirationDateTime().isBefore(now)){
+            throw new BadRequestException("Sorry! This Poll has already expired");
+        }
+        if(poll.getStartDateTime() != null && poll.getStartDateTime().isAfter(now)){
+            throw new BadRequestException("Sorry! This Poll is not open for votes yet");
+        }
+    }
+
+    //Records the assembly of a listing page as a PollPageEvent
+    private PagedResponse<PollResponse> recordPage(String listing, int page, int size, Supplier<PagedResponse<PollResponse>> assembly) {
+        PollPageEvent event = new PollPageEvent();
+        int queriesBefore = QueryCounter.count();
+        event.begin();
+        PagedResponse<PollResponse> response = null;
+        try {
+            response = assembly.get();
+            return response;
+        } finally {
+            event.listing = listing;
+            event.page = page;
+            event.pageSize = size;
+            event.polls = response != null ? response.getContent().size() : 0;
+            event.queries = QueryCounter.count() - queriesBefore;
+            event.commit();
+        }
+    }
 
+    /**
+     * EXACT reads the total of the Page, CACHED serves it from CachedTotals (counted by totalCounter when missing
+     * or stale) and SLICE does not count at all, totalElements and totalPages are then -1 and last is all there is.
+     */
+    private <T> PagedResponse<T> toPagedResponse(List<T> content, Slice<?> slice, TotalsMode mode,
+                                                 String totalKey, LongSupplier totalCounter) {
+        long totalElements;
+        if (mode == TotalsMode.EXACT) {
+            totalElements = ((Page<?>) slice).getTotalElements();
+        } else if (mode == TotalsMode.CACHED) {
+            totalElements = cachedTotals.get(totalKey, totalCounter);
+        } else {
+            totalElements = -1;
+        }
+
+        int size = slice.getSize();
+        int totalPages = totalElements < 0 ? -1 : size == 0 ? 1 : (int) Math.ceil((double) totalElements / size);
+        PagedResponse<T> response = new PagedResponse<>(content, slice.getNumber(), size, totalElements, totalPages, slice.isLast());
+        response.setTotalExact(mode == TotalsMode.EXACT);
+        return response;
     }
 
-    private Map<Long, User> getPollCreatorMap(List<Poll> polls) {
+    private List<PollResponse> mapPollsToPollResponses(List<Poll> polls, LongLongMap choiceVoteCountMap,
+                                                       LongObjectMap<User> creatorMap, LongLongMap pollUserVoteMap,
+                                                       UserPrincipal currentUser) {
+        //One clock read for the whole page
+        Instant now = Instant.now();
+        List<PollResponse> pollResponses = new ArrayList<>(polls.size());
+        for (Poll poll : polls) {
+            pollResponses.add(withBallotResult(poll, ModelMapper.mapPollToPollResponse(poll,
+                    choiceVoteCountMap,
+                    creatorMap.get(poll.getCreateBy()),
+                    selectedChoice(pollUserVoteMap, poll.getId()),
+                    now), currentUser));
+        }
+        return pollResponses;
+    }
+
+    //MULTIPLE and RANKED polls are counted from their ballots, see BallotTallies
+    private PollResponse withBallotResult(Poll poll, PollResponse pollResponse, UserPrincipal currentUser) {
+        if (poll.getType() == PollType.SINGLE) {
+            return pollResponse;
+        }
+        return ModelMapper.applyBallotResult(pollResponse,
+                ballotTallies.getResult(poll, currentUser != null ? currentUser.getId() : null));
+    }
+
+    private LongObjectMap<User> getPollCreatorMap(List<Poll> polls) {
         // Get Poll Creator details of the given list of polls
         List<Long> creatorIds = polls.stream()
                 .map(Poll::getCreateBy)
                 .distinct()
                 .collect(Collectors.toList());
 
-        List<User> creators = userRepository.findByIdIn(creatorIds);
-        Map<Long, User> creatorMap = creators.stream()
-                .collect(Collectors.toMap(User::getId, Function.identity()));
-        return creatorMap;
+        return creatorLoads.load(creatorIds, () -> {
+            List<User> creators = userRepository.findByIdIn(creatorIds);
+            LongObjectMap<User> creatorMap = new LongObjectMap<>(creators.size());
+            for (User creator : creators) {
+                creatorMap.put(creator.getId(), creator);
+            }
+            return creatorMap;
+        });
     }
 
-    private Map<Long, Long> getPollUserVoteMap(UserPrincipal currentUser, List<Long> pollIds) {
-        // Retrieve Votes done by the logged in user to the given pollIds
-        Map<Long, Long> pollUserVoteMap = null;
-        if(currentUser != null){
-            List<Vote> userVotes = voteRepository.findByUserIdAndPollIdIn(currentUser.getId(), pollIds);
+    private LongLongMap getPollUserVoteMap(UserPrincipal currentUser, List<Long> pollIds) {
+        // Retrieve Votes done by the logged in user to the given polls
+        if(currentUser == null){
+            return null;
+        }
 
-            pollUserVoteMap = userVotes.stream()
-                    .collect(Collectors.toMap(vote -> vote.getPoll().getId(), vote -> vote.getChoice().getId()));
+        //Live and archived votes are both in the index, no query once the user is loaded
+        return userVoteIndex.getVotedChoices(currentUser.getId(), pollIds);
+    }
+
+    //Choice ids are never 0, one lookup tells both whether and what the user voted
+    private static Long selectedChoice(LongLongMap pollUserVoteMap, Long pollId) {
+        if (pollUserVoteMap == null) {
+            return null;
         }
-        return pollUserVoteMap;
+        long choiceId = pollUserVoteMap.get(pollId, 0);
+        return choiceId == 0 ? null : choiceId;
     }
 
-    private Map<Long, Long> getChoiceVoteCountMap(List<Long> pollIds) {
-        // Retrieve Vote Counts of every Choice belonging to the given pollIds
-        List<ChoiceVoteCount> votes = voteRepository.countByPollIdInGroupByChoiceId(pollIds);
+    private LongLongMap getChoiceVoteCountMap(List<Poll> polls) {
+        //Served by the VoteTallyStore once it is loaded
+        LongLongMap choiceVoteCountMap = voteTallyStore.getVoteCounts(polls);
+        if (choiceVoteCountMap != null) {
+            return choiceVoteCountMap;
+        }
 
-        Map<Long, Long> choiceVoteMap = votes.stream()
-                .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
+        // Retrieve Vote Counts of every Choice belonging to the given polls
+        List<Long> pollIds = polls.stream().map(Poll::getId).collect(Collectors.toList());
+        return choiceVoteCountLoads.load(pollIds,
+                () -> toChoiceVoteCountMap(voteRepository.countByPollIdInGroupByChoiceId(pollIds)));
+    }
 
+    private LongLongMap getChoiceVoteCountMap(Poll poll) {
+        LongLongMap choiceVoteCountMap = voteTallyStore.getVoteCounts(Collections.singletonList(poll));
+        if (choiceVoteCountMap != null) {
+            return choiceVoteCountMap;
+        }
+        return toChoiceVoteCountMap(voteRepository.countByPollIdGroupByChoiceId(poll.getId()));
+    }
+
+    private static LongLongMap toChoiceVoteCountMap(List<ChoiceVoteCount> votes) {
+        LongLongMap choiceVoteMap = new LongLongMap(votes.size());
+        for (ChoiceVoteCount vote : votes) {
+            choiceVoteMap.put(vote.getChoiceId(), vote.getVoteCount());
+        }
         return choiceVoteMap;
     }
 
 
+    //How a listing computes its total, chosen per endpoint with the app.totals.* properties
+    private enum TotalsMode {
+        EXACT,
+        CACHED,
+        SLICE
+    }
+
+    //Shared read-only by the requests coalesced on the same poll
+    private static class PollSnapshot {
+        private final Poll poll;
+        private final LongLongMap choiceVotesMap;
+        private final User creator;
+
+        private PollSnapshot(Poll poll, LongLongMap choiceVotesMap, User creator) {
+            this.poll = poll;
+            this.choiceVotesMap = choiceVotesMap;
+            this.creator = creator;
+        }
+    }
+
+    private static class RecentVote {
+        private final long pollId;
+        private final long choiceId;
+        //Canonical choice ids of a ballot, null for a vote
+        private final String choiceIds;
+
+        private RecentVote(long pollId, long choiceId) {
+            this(pollId, choiceId, null);
+        }
+
+        private RecentVote(long pollId, long choiceId, String choiceIds) {
+            this.pollId = pollId;
+            this.choiceId = choiceId;
+            this.choiceIds = choiceIds;
+        }
+    }
+
     private void validatePageNumberAndSize(int page, int size) {
         if(page<0){
             throw new BadRequestException("Page number cannot be less than zero.");
@@ -0,0 +1,268 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.util.HyperLogLog;
+import com.felixlaura.pollingapp.util.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the views and the unique viewers of every poll in memory: a LongAdder for the views and a HyperLogLog
+ * sketch of the viewer keys (user id, or a fingerprint of anonymous clients) for the unique viewers.
+ * Nothing is written per view. Every app.views.flushMs the polls viewed since the last flush are written to
+ * poll_views in batches of app.views.batchSize: the views are added to the stored count and the sketch is merged
+ * with the stored one, so every node adds its views and the sketches of all nodes end up in the row.
+ * Polls not viewed during a flush interval are dropped from memory and read back on their next view,
+ * which also picks up what the other nodes wrote. Unknown poll ids are remembered as misses until the next flush.
+ *
+ * The numbers shown change with every view, so they move the poll's ETag once per flush interval (viewEpoch).
+ */
+@Service
+public class PollViewService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PollViewService.class);
+
+    //Polls without a poll_views row yet load with no views, unknown polls load nothing
+    private static final String LOAD_SQL = "SELECT v.views, v.sketch FROM polls p " +
+            "LEFT JOIN poll_views v ON v.poll_id = p.id WHERE p.id = ?";
+
+    private static final String UPSERT_SQL = "INSERT INTO poll_views (poll_id, views, sketch, updated_at) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE views = views + VALUES(views), sketch = VALUES(sketch), updated_at = VALUES(updated_at)";
+
+    //Stands for a poll id without a poll, never changed so it is dropped on the next flush
+    private static final PollViews MISSING = new PollViews(0, new HyperLogLog());
+
+    private final Map<Long, PollViews> polls = new ConcurrentHashMap<>();
+
+    private SingleFlight<Long, PollViews> loads;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.views.enabled}")
+    private boolean enabled;
+
+    @Value("${app.views.flushMs}")
+    private long flushMs;
+
+    @Value("${app.views.batchSize}")
+    private int batchSize;
+
+    @Value("${app.singleFlight.timeoutMs}")
+    private long singleFlightTimeoutMs;
+
+    @PostConstruct
+    void start() {
+        loads = new SingleFlight<>("pollViews", singleFlightTimeoutMs, meterRegistry);
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    /**
+     * Records a view of the poll, ignored for unknown polls. The first view of a poll on this node reads its row,
+     * outside of the map so views of other polls do not wait for it.
+     */
+    public void recordView(Long pollId, String viewerKey) {
+        if (!enabled) {
+            return;
+        }
+        PollViews views = polls.get(pollId);
+        if (views == null) {
+            PollViews loaded = loads.load(pollId, () -> load(pollId));
+            views = polls.putIfAbsent(pollId, loaded);
+            if (views == null) {
+                views = loaded;
+            }
+        }
+        if (views != MISSING) {
+            views.record(HyperLogLog.hash(viewerKey));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    //Changes once per flush interval, the same on every node
+    public long viewEpoch() {
+        return enabled ? System.currentTimeMillis() / flushMs : 0;
+    }
+
+    /**
+     * Views and estimated unique viewers of the poll as {views, uniqueViewers},
+     * or null when the poll was not viewed recently on this node.
+     */
+    public long[] getViews(Long pollId) {
+        PollViews views = polls.get(pollId);
+        return views != null && views != MISSING ? new long[]{views.views(), views.uniqueViewers()} : null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.views.flushMs}", initialDelayString = "${app.views.flushMs}")
+    public void flush() {
+        List<Map.Entry<Long, PollViews>> viewed = new ArrayList<>();
+        for (Map.Entry<Long, PollViews> entry : polls.entrySet()) {
+            //Not viewed since the last flush, the next view reads the row again.
+            //A view racing with the removal is still written below
+            if (!entry.getValue().hasChanges()) {
+                polls.remove(entry.getKey(), entry.getValue());
+            }
+            if (entry.getValue().hasChanges()) {
+                viewed.add(entry);
+            }
+        }
+
+        for (int from = 0; from < viewed.size(); from += batchSize) {
+            List<Map.Entry<Long, PollViews>> batch = viewed.subList(from, Math.min(viewed.size(), from + batchSize));
+            try {
+                persist(batch);
+            } catch (RuntimeException ex) {
+                logger.error("Could not persist the views of {} polls, keeping them for the next flush", batch.size(), ex);
+            }
+        }
+    }
+
+    /**
+     * The stored sketches are read under lock, so concurrent flushes of other nodes wait instead of overwriting
+     * each other's registers. The drained views go back to the counters when the transaction fails.
+     */
+    private void persist(List<Map.Entry<Long, PollViews>> batch) {
+        List<Long> pollIds = batch.stream().map(Map.Entry::getKey).collect(Collectors.toList());
+        long[] drained = new long[batch.size()];
+        for (int i = 0; i < batch.size(); i++) {
+            drained[i] = batch.get(i).getValue().drain();
+        }
+
+        Map<Long, Long> storedViews = new HashMap<>();
+        Map<Long, HyperLogLog> storedSketches = new HashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                String placeholders = String.join(",", Collections.nCopies(pollIds.size(), "?"));
+                jdbcTemplate.query("SELECT poll_id, views, sketch FROM poll_views WHERE poll_id IN (" + placeholders + ") FOR UPDATE",
+                        (RowCallbackHandler) rs -> {
+                            storedViews.put(rs.getLong(1), rs.getLong(2));
+                            storedSketches.put(rs.getLong(1), HyperLogLog.fromBytes(rs.getBytes(3)));
+                        }, pollIds.toArray());
+
+                Timestamp now = new Timestamp(System.currentTimeMillis());
+                List<Object[]> rows = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    HyperLogLog sketch = batch.get(i).getValue().sketch;
+                    HyperLogLog stored = storedSketches.get(pollIds.get(i));
+                    if (stored != null) {
+                        sketch.merge(stored);
+                    }
+                    rows.add(new Object[]{pollIds.get(i), drained[i], sketch.toBytes(), now});
+                }
+                jdbcTemplate.batchUpdate(UPSERT_SQL, rows);
+            });
+        } catch (RuntimeException ex) {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).getValue().restore(drained[i]);
+            }
+            throw ex;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).getValue().flushed(storedViews.getOrDefault(pollIds.get(i), 0L) + drained[i]);
+        }
+    }
+
+    private PollViews load(Long pollId) {
+        List<PollViews> loaded = jdbcTemplate.query(LOAD_SQL, (rs, rowNum) -> {
+            byte[] sketch = rs.getBytes(2);
+            return new PollViews(rs.getLong(1), sketch != null ? HyperLogLog.fromBytes(sketch) : new HyperLogLog());
+        }, pollId);
+        return loaded.isEmpty() ? MISSING : loaded.get(0);
+    }
+
+    private static class PollViews {
+
+        //Merged with the stored sketch on every flush, so it covers the views of every node up to then
+        private final HyperLogLog sketch;
+
+        //Striped, views on a busy poll do not contend on one counter
+        private final LongAdder pending = new LongAdder();
+        private volatile long flushedViews;
+        private volatile boolean changed;
+
+        private volatile long uniqueViewers;
+        private volatile boolean uniqueViewersStale = true;
+
+        private PollViews(long flushedViews, HyperLogLog sketch) {
+            this.flushedViews = flushedViews;
+            this.sketch = sketch;
+        }
+
+        void record(long viewerHash) {
+            pending.increment();
+            changed = true;
+            if (sketch.add(viewerHash)) {
+                uniqueViewersStale = true;
+            }
+        }
+
+        long views() {
+            return flushedViews + pending.sum();
+        }
+
+        //The estimate reads every register, it is only computed again after a register changed
+        long uniqueViewers() {
+            if (uniqueViewersStale) {
+                uniqueViewersStale = false;
+                uniqueViewers = sketch.estimate();
+            }
+            return uniqueViewers;
+        }
+
+        boolean hasChanges() {
+            return changed;
+        }
+
+        long drain() {
+            changed = false;
+            long views = pending.sumThenReset();
+            //Counted as flushed already, so views() does not dip while the batch is written
+            flushedViews += views;
+            return views;
+        }
+
+        void restore(long views) {
+            flushedViews -= views;
+            pending.add(views);
+            changed = true;
+        }
+
+        void flushed(long storedViews) {
+            flushedViews = storedViews;
+            uniqueViewersStale = true;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.exception.BadRequestException;
+import com.felixlaura.pollingapp.monitoring.JwtVerificationEvent;
+import com.felixlaura.pollingapp.monitoring.PasswordCheckEvent;
+import com.felixlaura.pollingapp.monitoring.PollPageEvent;
+import com.felixlaura.pollingapp.monitoring.VoteCastEvent;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+
+/**
+ * Runs one Java Flight Recorder recording at a time on this node, started and stopped by an admin
+ * through ProfilingController. Recordings use the JDK settings named by app.profiling.settings plus the
+ * application events (votes, poll pages, JWT and password checks). They are bounded: they stop by themselves
+ * after app.profiling.maxDurationSeconds and keep at most app.profiling.maxSizeMb of data.
+ */
+@Service
+public class ProfilingService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfilingService.class);
+
+    @Value("${app.profiling.settings}")
+    private String settings;
+
+    @Value("${app.profiling.maxDurationSeconds}")
+    private long maxDurationSeconds;
+
+    @Value("${app.profiling.maxSizeMb}")
+    private long maxSizeMb;
+
+    private Recording recording;
+
+    public synchronized Duration start(long durationSeconds) {
+        if (recording != null) {
+            throw new BadRequestException("A recording is already in progress, stop it first");
+        }
+        Duration duration = Duration.ofSeconds(Math.max(1, Math.min(durationSeconds, maxDurationSeconds)));
+
+        Recording started;
+        try {
+            started = new Recording(Configuration.getConfiguration(settings));
+        } catch (IOException | ParseException ex) {
+            throw new IllegalStateException("Could not read the JFR settings " + settings, ex);
+        }
+        started.setName("polling-app-admin");
+        started.setToDisk(true);
+        started.setMaxSize(maxSizeMb * 1024 * 1024);
+        started.setDuration(duration);
+        started.enable(VoteCastEvent.class);
+        started.enable(PollPageEvent.class);
+        started.enable(JwtVerificationEvent.class);
+        started.enable(PasswordCheckEvent.class);
+        started.start();
+
+        recording = started;
+        logger.info("JFR recording started for at most {} seconds", duration.getSeconds());
+        return duration;
+    }
+
+    /**
+     * Stops the recording (unless its duration already did) and writes it to a temporary file,
+     * which the caller deletes once sent.
+     */
+    public synchronized Path stop() {
+        if (recording == null) {
+            throw new BadRequestException("No recording in progress");
+        }
+        try {
+            if (recording.getState() == RecordingState.RUNNING) {
+                recording.stop();
+            }
+            Path file = Files.createTempFile("polling-app-", ".jfr");
+            recording.dump(file);
+            logger.info("JFR recording stopped, {} bytes", Files.size(file));
+            return file;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not write the JFR recording", ex);
+        } finally {
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @PreDestroy
+    synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.cache.CacheBus;
+import com.felixlaura.pollingapp.cache.CacheEvent;
+import com.felixlaura.pollingapp.model.Choice;
+import com.felixlaura.pollingapp.model.ChoiceVoteCount;
+import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.repository.ArchivedVoteRepository;
+import com.felixlaura.pollingapp.repository.PollRepository;
+import com.felixlaura.pollingapp.repository.VoteRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Moves the votes of polls that expired more than app.archive.afterDays ago out of the votes table,
+ * so that the indexes every live query goes through only hold votes that still matter.
+ * The final count of every choice is kept in Choice.archivedVoteCount and the votes themselves
+ * in the compressed archived_votes table, which PollService reads for user history.
+ */
+@Service
+public class VoteArchiveService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteArchiveService.class);
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @Autowired
+    private ArchivedVoteRepository archivedVoteRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Value("${app.archive.enabled}")
+    private boolean enabled;
+
+    @Value("${app.archive.afterDays}")
+    private long afterDays;
+
+    @Scheduled(cron = "${app.archive.cron}")
+    public void archiveExpiredPolls() {
+        if (!enabled) {
+            return;
+        }
+
+        Instant expiredBefore = Instant.now().minus(Duration.ofDays(afterDays));
+        //Polls that failed stay unarchived and come back in the next batches, they are skipped until the next run
+        Set<Long> failed = new HashSet<>();
+        int archived = 0;
+        boolean progress;
+        do {
+            progress = false;
+            for (Poll poll : pollRepository.findTop100ByArchivedFalseAndExpirationDateTimeBefore(expiredBefore)) {
+                if (failed.contains(poll.getId())) {
+                    continue;
+                }
+                progress = true;
+                try {
+                    archivePoll(poll.getId());
+                    archived++;
+                } catch (RuntimeException ex) {
+                    failed.add(poll.getId());
+                    logger.error("Could not archive the votes of poll {}", poll.getId(), ex);
+                }
+            }
+        } while (progress);
+
+        if (archived > 0 || !failed.isEmpty()) {
+            logger.info("Archived the votes of {} polls expired before {}, {} failed", archived, expiredBefore, failed.size());
+        }
+    }
+
+    //Every poll is archived in its own transaction, the counts, the copy and the delete must not be split
+    public void archivePoll(Long pollId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Poll poll = pollRepository.findById(pollId).orElse(null);
+            if (poll == null || poll.isArchived()) {
+                return;
+            }
+
+            Map<Long, Long> choiceVotesMap = voteRepository.countByPollIdGroupByChoiceId(pollId).stream()
+                    .collect(Collectors.toMap(ChoiceVoteCount::getChoiceId, ChoiceVoteCount::getVoteCount));
+            for (Choice choice : poll.getChoices()) {
+                choice.setArchivedVoteCount(choice.getArchivedVoteCount() + choiceVotesMap.getOrDefault(choice.getId(), 0L));
+            }
+
+            archivedVoteRepository.copyVotesOfPoll(pollId);
+            voteRepository.deleteByPollId(pollId);
+
+            poll.setArchived(true);
+            pollRepository.save(poll);
+        });
+
+        cacheBus.publish(CacheEvent.pollArchived(pollId));
+    }
+}
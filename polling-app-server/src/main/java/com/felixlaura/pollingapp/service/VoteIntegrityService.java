@@ -0,0 +1,96 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.cache.CacheBus;
+import com.felixlaura.pollingapp.cache.CacheEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for the foreign keys the votes and ballots tables cannot have (votes is partitioned, see Vote).
+ * The write paths only store votes for a loaded poll, one of its choices and the authenticated user; this job
+ * removes the rows left behind when a poll, a choice or a user is deleted from the database directly.
+ * Both tables are walked in id order, app.voteIntegrity.batchSize rows at a time, so no statement scans
+ * or locks the whole table.
+ */
+@Service
+public class VoteIntegrityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteIntegrityService.class);
+
+    private static final String ORPHAN_VOTES_SQL = "SELECT v.id, v.poll_id, " +
+            "(p.id IS NULL OR c.id IS NULL OR u.id IS NULL) AS orphan FROM votes v " +
+            "LEFT JOIN polls p ON p.id = v.poll_id " +
+            "LEFT JOIN choices c ON c.id = v.choice_id AND c.poll_id = v.poll_id " +
+            "LEFT JOIN users u ON u.id = v.user_id " +
+            "WHERE v.id > ? ORDER BY v.id LIMIT ?";
+
+    private static final String ORPHAN_BALLOTS_SQL = "SELECT b.id, b.poll_id, " +
+            "(p.id IS NULL OR u.id IS NULL) AS orphan FROM ballots b " +
+            "LEFT JOIN polls p ON p.id = b.poll_id " +
+            "LEFT JOIN users u ON u.id = b.user_id " +
+            "WHERE b.id > ? ORDER BY b.id LIMIT ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Value("${app.voteIntegrity.enabled}")
+    private boolean enabled;
+
+    @Value("${app.voteIntegrity.batchSize}")
+    private int batchSize;
+
+    @Scheduled(cron = "${app.voteIntegrity.cron}")
+    public void removeOrphans() {
+        if (!enabled) {
+            return;
+        }
+
+        //poll_id is part of the delete so MySQL only looks into the partition holding the vote
+        int votes = removeOrphans(ORPHAN_VOTES_SQL, "DELETE FROM votes WHERE id = ? AND poll_id = ?");
+        int ballots = removeOrphans(ORPHAN_BALLOTS_SQL, "DELETE FROM ballots WHERE id = ? AND poll_id = ?");
+
+        if (votes > 0 || ballots > 0) {
+            logger.warn("Removed {} votes and {} ballots whose poll, choice or user no longer exists", votes, ballots);
+            //The cached tallies may still count them
+            cacheBus.publish(CacheEvent.invalidateAll());
+        }
+    }
+
+    private int removeOrphans(String selectSql, String deleteSql) {
+        int removed = 0;
+        long lastId = Long.MIN_VALUE;
+        int rows;
+        do {
+            List<Object[]> orphans = new ArrayList<>();
+            long[] last = {lastId};
+            int[] count = {0};
+            jdbcTemplate.query(selectSql, (RowCallbackHandler) rs -> {
+                last[0] = rs.getLong(1);
+                count[0]++;
+                if (rs.getBoolean(3)) {
+                    orphans.add(new Object[]{rs.getLong(1), rs.getLong(2)});
+                }
+            }, lastId, batchSize);
+
+            if (!orphans.isEmpty()) {
+                jdbcTemplate.batchUpdate(deleteSql, orphans);
+                removed += orphans.size();
+            }
+            lastId = last[0];
+            rows = count[0];
+        } while (rows == batchSize);
+        return removed;
+    }
+}
@@ -0,0 +1,196 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.cache.CacheBus;
+import com.felixlaura.pollingapp.cache.CacheEvent;
+import com.felixlaura.pollingapp.cache.CacheEventListener;
+import com.felixlaura.pollingapp.cache.VoteTimeline;
+import com.felixlaura.pollingapp.exception.ResourceNotFoundException;
+import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.model.VoteTimelineBucket;
+import com.felixlaura.pollingapp.model.VoteTimelineBucket.Granularity;
+import com.felixlaura.pollingapp.payload.PollTimelineResponse;
+import com.felixlaura.pollingapp.payload.TimelinePoint;
+import com.felixlaura.pollingapp.repository.PollRepository;
+import com.felixlaura.pollingapp.repository.VoteTimelineRepository;
+import com.felixlaura.pollingapp.security.UserPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the vote timeline of every open poll in memory, fed by the VOTE_CAST events of the cache bus,
+ * so GET /api/polls/{pollId}/timeline never scans votes.created_at. The timeline is only shown to the poll's creator.
+ * Changed buckets are written to poll_vote_timeline every app.timeline.flushMs, and a timeline is dropped
+ * from memory app.timeline.graceHours after its poll expired. Later reads are served from the table.
+ */
+@Service
+public class VoteTimelineService implements CacheEventListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(VoteTimelineService.class);
+
+    private final Map<Long, VoteTimeline> timelines = new ConcurrentHashMap<>();
+
+    @Autowired
+    private CacheBus cacheBus;
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Autowired
+    private VoteTimelineRepository voteTimelineRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${app.timeline.minuteSlots}")
+    private int minuteSlots;
+
+    @Value("${app.timeline.hourSlots}")
+    private int hourSlots;
+
+    @Value("${app.timeline.graceHours}")
+    private long graceHours;
+
+    @PostConstruct
+    void subscribe() {
+        cacheBus.subscribe(this);
+    }
+
+    @PreDestroy
+    void stop() {
+        flush();
+    }
+
+    @Override
+    public void onEvent(CacheEvent event) {
+        switch (event.getType()) {
+            case VOTE_CAST:
+            case BALLOT_CAST:
+                VoteTimeline timeline = timelines.get(event.getPollId());
+                if (timeline == null) {
+                    //Loaded outside the map, a concurrent load of the same poll loses and is dropped
+                    VoteTimeline loaded = load(event.getPollId());
+                    if (loaded == null) {
+                        break;
+                    }
+                    timeline = timelines.putIfAbsent(event.getPollId(), loaded);
+                    if (timeline == null) {
+                        timeline = loaded;
+                    }
+                }
+                timeline.record(event.getTimestamp(), event.getDelta());
+                break;
+            case POLL_ARCHIVED:
+                evict(event.getPollId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    //Only the creator of the poll and admins can read its timeline
+    public PollTimelineResponse getTimeline(Long pollId, UserPrincipal currentUser) {
+        VoteTimeline timeline = timelines.get(pollId);
+        if (timeline == null) {
+            //Polls past their grace period are not kept in memory, only read back
+            timeline = load(pollId);
+            if (timeline == null) {
+                throw new ResourceNotFoundException("Poll", "id", pollId);
+            }
+        }
+        if (!isAdmin(currentUser) && !currentUser.getId().equals(timeline.getCreatedBy())) {
+            throw new AccessDeniedException("Only the creator of the poll can read its timeline");
+        }
+        return new PollTimelineResponse(pollId, toPoints(timeline.minuteBuckets()), toPoints(timeline.hourBuckets()));
+    }
+
+    @Scheduled(fixedDelayString = "${app.timeline.flushMs}", initialDelayString = "${app.timeline.flushMs}")
+    public void flush() {
+        for (Map.Entry<Long, VoteTimeline> entry : timelines.entrySet()) {
+            if (entry.getValue().hasChanges()) {
+                try {
+                    persist(entry.getKey(), entry.getValue());
+                } catch (RuntimeException ex) {
+                    logger.error("Could not persist the vote timeline of poll {}", entry.getKey(), ex);
+                }
+            }
+        }
+
+        //Memory is only spent on polls that can still receive votes, plus the grace period
+        Instant evictBefore = Instant.now().minus(Duration.ofHours(graceHours));
+        timelines.entrySet().removeIf(entry -> entry.getValue().getExpiresAt().isBefore(evictBefore)
+                && !entry.getValue().hasChanges());
+    }
+
+    //The final counts of an expired poll are written right away instead of at the next flush
+    @EventListener
+    public void onPollLifecycle(PollLifecycleEvent event) {
+        VoteTimeline timeline = timelines.get(event.getPollId());
+        if (event.getType() == PollLifecycleEvent.Type.EXPIRED && timeline != null && timeline.hasChanges()) {
+            persist(event.getPollId(), timeline);
+        }
+    }
+
+    private void evict(Long pollId) {
+        VoteTimeline timeline = timelines.remove(pollId);
+        if (timeline != null && timeline.hasChanges()) {
+            persist(pollId, timeline);
+        }
+    }
+
+    private void persist(Long pollId, VoteTimeline timeline) {
+        List<VoteTimeline.Bucket> minutes = timeline.drainChangedMinutes();
+        List<VoteTimeline.Bucket> hours = timeline.drainChangedHours();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (VoteTimeline.Bucket bucket : minutes) {
+                voteTimelineRepository.upsert(pollId, Granularity.MINUTE.name(), bucket.getStart(), bucket.getVotes());
+            }
+            for (VoteTimeline.Bucket bucket : hours) {
+                voteTimelineRepository.upsert(pollId, Granularity.HOUR.name(), bucket.getStart(), bucket.getVotes());
+            }
+        });
+    }
+
+    private VoteTimeline load(Long pollId) {
+        Poll poll = pollRepository.findById(pollId).orElse(null);
+        if (poll == null) {
+            return null;
+        }
+
+        VoteTimeline timeline = new VoteTimeline(minuteSlots, hourSlots, poll.getExpirationDateTime(), poll.getCreateBy());
+        for (VoteTimelineBucket bucket : voteTimelineRepository.findByPollId(pollId)) {
+            if (bucket.getGranularity() == Granularity.MINUTE) {
+                timeline.restoreMinute(bucket.getBucketStart().toEpochMilli(), bucket.getVoteCount());
+            } else {
+                timeline.restoreHour(bucket.getBucketStart().toEpochMilli(), bucket.getVoteCount());
+            }
+        }
+        return timeline;
+    }
+
+    private static boolean isAdmin(UserPrincipal currentUser) {
+        return currentUser.getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+
+    private static List<TimelinePoint> toPoints(List<VoteTimeline.Bucket> buckets) {
+        return buckets.stream()
+                .map(bucket -> new TimelinePoint(bucket.getStart(), bucket.getVotes()))
+                .collect(Collectors.toList());
+    }
+}
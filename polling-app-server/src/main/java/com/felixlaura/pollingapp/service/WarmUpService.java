@@ -0,0 +1,174 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.cache.UserVoteIndex;
+import com.felixlaura.pollingapp.cache.VoteTallyStore;
+import com.felixlaura.pollingapp.util.AppConstants;
+import com.felixlaura.pollingapp.util.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the caches before the node takes traffic. Spring Boot only reports the node ready
+ * (ReadinessState.ACCEPTING_TRAFFIC, /actuator/health/readiness) once the application runners are done,
+ * so the load balancer keeps this node out until the warm-up finished or app.warmUp.timeoutMs passed.
+ *
+ * The users who voted in the last app.warmUp.lookbackMinutes are read from the votes table, then their votes are
+ * loaded into the UserVoteIndex in batches of app.warmUp.batchSize on app.warmUp.threads threads. The first page
+ * of polls is loaded as well, which counts the CachedTotals of the listing, and the warm-up waits for the
+ * VoteTallyStore, which holds the tallies of every poll.
+ * Only what is cached is loaded: polls and user principals are read from the database on every request,
+ * loading them here would only add queries.
+ * Progress is reported by the app.warmup.* meters.
+ */
+@Service
+public class WarmUpService implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmUpService.class);
+
+    private static final String ACTIVE_USERS_SQL =
+            "SELECT user_id FROM votes WHERE id > ? GROUP BY user_id ORDER BY MAX(id) DESC LIMIT ?";
+
+    private final AtomicInteger batchesTotal = new AtomicInteger();
+    private final AtomicInteger batchesDone = new AtomicInteger();
+    private volatile boolean finished;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PollService pollService;
+
+    @Autowired
+    private UserVoteIndex userVoteIndex;
+
+    @Autowired
+    private VoteTallyStore voteTallyStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.warmUp.enabled}")
+    private boolean enabled;
+
+    @Value("${app.warmUp.lookbackMinutes}")
+    private long lookbackMinutes;
+
+    @Value("${app.warmUp.users}")
+    private int maxUsers;
+
+    @Value("${app.warmUp.batchSize}")
+    private int batchSize;
+
+    @Value("${app.warmUp.threads}")
+    private int threads;
+
+    @Value("${app.warmUp.timeoutMs}")
+    private long timeoutMs;
+
+    private Counter usersLoaded;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        //Explicit, so the readiness probe does not depend on the default state
+        AvailabilityChangeEvent.publish(applicationContext, ReadinessState.REFUSING_TRAFFIC);
+        registerMeters();
+
+        long started = System.currentTimeMillis();
+        long deadline = started + timeoutMs;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "warm-up");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> batches = submitBatches(executor);
+            for (Future<?> batch : batches) {
+                batch.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            }
+            while (!voteTallyStore.isReady() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(100);
+            }
+            logger.info("Warm-up loaded {} users in {} ms", (long) usersLoaded.count(),
+                    System.currentTimeMillis() - started);
+        } catch (TimeoutException ex) {
+            logger.warn("Warm-up did not finish within {} ms ({} of {} batches), taking traffic anyway",
+                    timeoutMs, batchesDone.get(), batchesTotal.get());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (Exception ex) {
+            //A cold cache is slower, not wrong
+            logger.error("Warm-up failed, taking traffic with cold caches", ex);
+        } finally {
+            executor.shutdownNow();
+            finished = true;
+        }
+    }
+
+    private List<Future<?>> submitBatches(ExecutorService executor) {
+        long since = SnowflakeIdGenerator.maxIdAt(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(lookbackMinutes));
+        List<Long> userIds = jdbcTemplate.queryForList(ACTIVE_USERS_SQL, Long.class, since, maxUsers);
+
+        List<Future<?>> batches = new ArrayList<>();
+        batches.add(submit(executor, () -> pollService.getAllPolls(null, 0, Integer.parseInt(AppConstants.DEFAULT_PAGE_SIZE))));
+        for (int from = 0; from < userIds.size(); from += batchSize) {
+            List<Long> batch = userIds.subList(from, Math.min(userIds.size(), from + batchSize));
+            batches.add(submit(executor, () -> {
+                for (Long userId : batch) {
+                    userVoteIndex.preload(userId);
+                    usersLoaded.increment();
+                }
+            }));
+        }
+        return batches;
+    }
+
+    private Future<?> submit(ExecutorService executor, Runnable batch) {
+        batchesTotal.incrementAndGet();
+        return executor.submit(() -> {
+            try {
+                batch.run();
+            } catch (RuntimeException ex) {
+                logger.warn("Warm-up batch failed: {}", ex.getMessage());
+            } finally {
+                batchesDone.incrementAndGet();
+            }
+        });
+    }
+
+    private void registerMeters() {
+        usersLoaded = Counter.builder("app.warmup.users")
+                .description("Users loaded by the startup warm-up")
+                .register(meterRegistry);
+        Gauge.builder("app.warmup.progress", this, warmUp -> warmUp.finished ? 1.0
+                        : warmUp.batchesTotal.get() == 0 ? 0.0 : (double) warmUp.batchesDone.get() / warmUp.batchesTotal.get())
+                .description("Share of the warm-up batches done, 1 once the warm-up is over")
+                .register(meterRegistry);
+    }
+}
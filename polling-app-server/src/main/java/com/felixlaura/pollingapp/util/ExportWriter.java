@@ -0,0 +1,140 @@
+package com.felixlaura.pollingapp.util;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes export rows one at a time as CSV or newline delimited JSON. Nothing is buffered beyond the Writer,
+ * so an export of any size is written in constant memory.
+ */
+public abstract class ExportWriter {
+
+    public static final String CSV = "csv";
+    public static final String NDJSON = "ndjson";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    protected final Writer out;
+
+    protected String[] columns;
+
+    protected ExportWriter(Writer out) {
+        this.out = out;
+    }
+
+    public static boolean isSupported(String format) {
+        return CSV.equals(format) || NDJSON.equals(format);
+    }
+
+    public static String contentType(String format) {
+        return NDJSON.equals(format) ? "application/x-ndjson" : "text/csv";
+    }
+
+    public static ExportWriter create(String format, Writer out) throws IOException {
+        return NDJSON.equals(format) ? new NdjsonWriter(out) : new CsvWriter(out);
+    }
+
+    public void header(String... columns) throws IOException {
+        this.columns = columns;
+    }
+
+    //Values are Strings, Longs, Instants or null, in the order of the header columns
+    public abstract void row(Object... values) throws IOException;
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    private static class CsvWriter extends ExportWriter {
+
+        private CsvWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void header(String... columns) throws IOException {
+            super.header(columns);
+            row((Object[]) columns);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                if (values[i] instanceof String) {
+                    writeField(neutralizeFormula((String) values[i]));
+                } else if (values[i] != null) {
+                    writeField(values[i].toString());
+                }
+            }
+            out.write("\r\n");
+        }
+
+        //Spreadsheets run text starting with =, +, -, @, tab or CR as a formula, a leading ' keeps it text.
+        //Only user text goes through here, numbers and instants are written as they are
+        static String neutralizeFormula(String value) {
+            if (value.isEmpty()) {
+                return value;
+            }
+            char first = value.charAt(0);
+            boolean formula = first == '=' || first == '+' || first == '-' || first == '@' || first == '\t' || first == '\r';
+            return formula ? "'" + value : value;
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                out.write(value);
+                return;
+            }
+            out.write('"');
+            out.write(value.replace("\"", "\"\""));
+            out.write('"');
+        }
+    }
+
+    private static class NdjsonWriter extends ExportWriter {
+
+        private final JsonGenerator generator;
+
+        private NdjsonWriter(Writer out) throws IOException {
+            super(out);
+            this.generator = jsonFactory.createGenerator(out);
+            //The generator must not close the response stream, ExportService owns it
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void row(Object... values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < values.length; i++) {
+                Object value = values[i];
+                generator.writeFieldName(columns[i]);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long || value instanceof Integer) {
+                    generator.writeNumber(((Number) value).longValue());
+                } else {
+                    //Instants are written in ISO-8601, like the JSON API does
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+}
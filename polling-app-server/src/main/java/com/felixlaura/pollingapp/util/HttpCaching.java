@@ -0,0 +1,101 @@
+package com.felixlaura.pollingapp.util;
+
+import com.felixlaura.pollingapp.security.UserPrincipal;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Validators and Cache-Control values shared by the GET endpoints.
+ * Responses carry the caller's own selected choice, so ETags include the user and authenticated responses
+ * are only cached privately. The same URL is served as JSON, CBOR or Smile depending on Accept (see WebMvcConfig),
+ * so ETags also name the representation and every response varies on both headers.
+ */
+public class HttpCaching {
+
+    public static final String VARY = HttpHeaders.AUTHORIZATION + ", " + HttpHeaders.ACCEPT;
+
+    private static final MediaType SMILE = new MediaType("application", "x-jackson-smile");
+
+    //What the Jackson converters write, in the order WebMvcConfig registers them
+    private static final List<MediaType> PRODUCIBLE = List.of(MediaType.APPLICATION_JSON,
+            new MediaType("application", "*+json"), MediaType.APPLICATION_CBOR, SMILE);
+
+    public static String etag(String resource, long version, UserPrincipal currentUser, String accept) {
+        return "\"" + resource + "-" + Long.toString(version, 36) + "-" + (currentUser != null ? currentUser.getId() : 0)
+                + "-" + representation(accept) + "\"";
+    }
+
+    /**
+     * json, cbor or smile: the representation Spring MVC negotiates for the Accept header, by the same rules
+     * (most specific accepted type first, then the converters in order). Anything else is answered in JSON or refused
+     * with 406, so it shares the JSON ETag.
+     */
+    public static String representation(String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(StringUtils.hasText(accept) ? MediaType.parseMediaTypes(accept) : List.of(MediaType.ALL));
+        } catch (InvalidMediaTypeException ex) {
+            return "json";
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+
+        List<MediaType> compatible = new ArrayList<>();
+        for (MediaType requested : accepted) {
+            for (MediaType producible : PRODUCIBLE) {
+                if (requested.isCompatibleWith(producible)) {
+                    MediaType produced = producible.copyQualityValue(requested);
+                    compatible.add(requested.isLessSpecific(produced) ? produced : requested);
+                }
+            }
+        }
+        MimeTypeUtils.sortBySpecificity(compatible);
+        for (MediaType type : compatible) {
+            if (type.isConcrete()) {
+                return type.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR) ? "cbor"
+                        : type.equalsTypeAndSubtype(SMILE) ? "smile" : "json";
+            }
+        }
+        return "json";
+    }
+
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(etag) || value.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Results of expired polls never change again
+    public static CacheControl forPoll(boolean expired, UserPrincipal currentUser, long expiredMaxAgeSeconds) {
+        if (!expired) {
+            return currentUser == null ? CacheControl.noCache().cachePublic() : CacheControl.noCache().cachePrivate();
+        }
+        CacheControl cacheControl = CacheControl.maxAge(expiredMaxAgeSeconds, TimeUnit.SECONDS);
+        return currentUser == null ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+    }
+
+    //Anonymous pages may be shared by the CDN for a few seconds, personal pages always revalidate
+    public static CacheControl forListing(UserPrincipal currentUser, long anonymousMaxAgeSeconds) {
+        if (currentUser == null) {
+            return CacheControl.maxAge(anonymousMaxAgeSeconds, TimeUnit.SECONDS).cachePublic();
+        }
+        return CacheControl.noCache().cachePrivate();
+    }
+}
@@ -0,0 +1,101 @@
+package com.felixlaura.pollingapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch estimating the number of distinct keys added, in 4 KB whatever the count.
+ * 2^12 one-byte registers give a standard error of about 1.6%, small counts are estimated by linear counting.
+ * Sketches merge by keeping the largest value of every register, so merging the same sketch twice changes nothing.
+ *
+ * add is safe for concurrent callers; merge, toBytes and estimate take the same lock.
+ */
+public class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int REGISTERS = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this.registers = new byte[REGISTERS];
+    }
+
+    //Restores a sketch written by toBytes
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes.length != REGISTERS) {
+            throw new IllegalArgumentException("A sketch holds " + REGISTERS + " registers, got " + bytes.length);
+        }
+        HyperLogLog sketch = new HyperLogLog();
+        System.arraycopy(bytes, 0, sketch.registers, 0, REGISTERS);
+        return sketch;
+    }
+
+    //64-bit hash of a key (FNV-1a, then the MurmurHash3 finalizer to spread the bits)
+    public static long hash(String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return hash(hash);
+    }
+
+    public static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        key *= 0xC4CEB9FE1A85EC53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    /**
+     * Adds a hashed key, returns whether a register changed. Once a sketch is warm most keys change nothing,
+     * those return without taking the lock.
+     */
+    public boolean add(long hash) {
+        int index = (int) (hash >>> (64 - PRECISION));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (registers[index] >= rank) {
+            return false;
+        }
+        synchronized (this) {
+            if (registers[index] >= rank) {
+                return false;
+            }
+            registers[index] = rank;
+            return true;
+        }
+    }
+
+    public synchronized void merge(HyperLogLog other) {
+        byte[] source = other.toBytes();
+        for (int i = 0; i < REGISTERS; i++) {
+            if (source[i] > registers[i]) {
+                registers[i] = source[i];
+            }
+        }
+    }
+
+    public synchronized byte[] toBytes() {
+        return Arrays.copyOf(registers, REGISTERS);
+    }
+
+    public synchronized long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+        if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+            estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
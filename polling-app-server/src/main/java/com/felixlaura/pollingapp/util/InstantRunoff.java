@@ -0,0 +1,213 @@
+package com.felixlaura.pollingapp.util;
+
+import java.util.Arrays;
+
+/**
+ * Instant-runoff count of a ranked-choice poll, updated as ballots arrive.
+ *
+ * Candidates are numbered 0 to candidates - 1. A ballot is a ranking packed in a long, 4 bits per rank
+ * starting with the lowest bits, each holding candidate + 1, 0 after the last rank (see rankingOf).
+ * Identical rankings are counted together, so a recount costs the number of distinct rankings, not of ballots.
+ *
+ * Each round the candidate with more than half of the ballots still ranking a continuing candidate wins,
+ * otherwise the candidate with the fewest votes is eliminated. Ties are broken by fewer first preferences,
+ * then by the later position in the poll. The vote counts of every round are kept: a new ballot adds one vote
+ * per round to the candidate it ranks highest among the ones still continuing in that round, then the rounds
+ * are checked in order and only the rounds from the first one whose outcome changed are recounted.
+ *
+ * Not thread safe.
+ */
+public class InstantRunoff {
+
+    public static final int MAX_CANDIDATES = 15;
+
+    //Decisions of a round: a candidate to eliminate (>= 0), WINNER_NONE, or -(winner + 2) when the round has a winner
+    private static final int WINNER_NONE = -1;
+
+    private final int candidates;
+
+    //Ballots per distinct ranking
+    private final LongLongMap rankings = new LongLongMap(64);
+    private long ballots;
+
+    //Per round: votes of every candidate (0 once eliminated), ballots exhausted and the candidate eliminated at its end
+    private long[][] roundVotes;
+    private long[] exhausted;
+    private int[] eliminated;
+    private int rounds;
+    private int winner = -1;
+
+    public InstantRunoff(int candidates) {
+        if (candidates < 1 || candidates > MAX_CANDIDATES) {
+            throw new IllegalArgumentException("Instant runoff supports 1 to " + MAX_CANDIDATES + " candidates");
+        }
+        this.candidates = candidates;
+        this.roundVotes = new long[candidates][candidates];
+        this.exhausted = new long[candidates];
+        this.eliminated = new int[candidates];
+    }
+
+    //Packs candidates in ranking order, the first one is the first preference
+    public static long rankingOf(int[] ranked) {
+        if (ranked.length > MAX_CANDIDATES) {
+            throw new IllegalArgumentException("A ranking holds at most " + MAX_CANDIDATES + " candidates");
+        }
+        long ranking = 0;
+        for (int rank = ranked.length - 1; rank >= 0; rank--) {
+            ranking = (ranking << 4) | (ranked[rank] + 1);
+        }
+        return ranking;
+    }
+
+    public void add(long ranking) {
+        rankings.put(ranking, rankings.get(ranking, 0) + 1);
+        ballots++;
+
+        if (rounds == 0) {
+            recountFrom(0);
+            return;
+        }
+        int eliminatedMask = 0;
+        for (int round = 0; round < rounds; round++) {
+            int top = topChoice(ranking, eliminatedMask);
+            if (top < 0) {
+                exhausted[round]++;
+            } else {
+                roundVotes[round][top]++;
+            }
+            if (round < rounds - 1) {
+                eliminatedMask |= 1 << eliminated[round];
+            }
+        }
+
+        //The outcome of a round depends on its counts only, the first round deciding differently is recounted
+        eliminatedMask = 0;
+        for (int round = 0; round < rounds; round++) {
+            int decision = decide(round, eliminatedMask);
+            boolean last = round == rounds - 1;
+            if (last ? decision != winnerDecision() : decision != eliminated[round]) {
+                recountFrom(round);
+                return;
+            }
+            if (!last) {
+                eliminatedMask |= 1 << eliminated[round];
+            }
+        }
+    }
+
+    public long getBallots() {
+        return ballots;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+
+    //Winning candidate, -1 without ballots or when every ballot is exhausted
+    public int getWinner() {
+        return winner;
+    }
+
+    public long getVotes(int round, int candidate) {
+        return roundVotes[round][candidate];
+    }
+
+    public long getExhausted(int round) {
+        return exhausted[round];
+    }
+
+    //Candidate eliminated at the end of the round, -1 for the last round
+    public int getEliminated(int round) {
+        return round < rounds - 1 ? eliminated[round] : -1;
+    }
+
+    public boolean isContinuing(int round, int candidate) {
+        for (int previous = 0; previous < round; previous++) {
+            if (eliminated[previous] == candidate) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void recountFrom(int firstRound) {
+        int eliminatedMask = 0;
+        for (int round = 0; round < firstRound; round++) {
+            eliminatedMask |= 1 << eliminated[round];
+        }
+        winner = -1;
+        rounds = firstRound;
+        if (ballots == 0) {
+            return;
+        }
+        while (rounds < candidates) {
+            int round = rounds++;
+            count(round, eliminatedMask);
+            int decision = decide(round, eliminatedMask);
+            if (decision == WINNER_NONE) {
+                return;
+            }
+            if (decision < WINNER_NONE) {
+                winner = -decision - 2;
+                return;
+            }
+            eliminated[round] = decision;
+            eliminatedMask |= 1 << decision;
+        }
+    }
+
+    private void count(int round, int eliminatedMask) {
+        long[] votes = roundVotes[round];
+        Arrays.fill(votes, 0);
+        exhausted[round] = 0;
+        rankings.forEach((ranking, count) -> {
+            int top = topChoice(ranking, eliminatedMask);
+            if (top < 0) {
+                exhausted[round] += count;
+            } else {
+                votes[top] += count;
+            }
+        });
+    }
+
+    private int winnerDecision() {
+        return winner >= 0 ? -winner - 2 : WINNER_NONE;
+    }
+
+    private int decide(int round, int eliminatedMask) {
+        long[] votes = roundVotes[round];
+        long active = ballots - exhausted[round];
+        if (active == 0) {
+            return WINNER_NONE;
+        }
+        int continuing = 0;
+        int last = -1;
+        int weakest = -1;
+        for (int candidate = 0; candidate < candidates; candidate++) {
+            if ((eliminatedMask & (1 << candidate)) != 0) {
+                continue;
+            }
+            continuing++;
+            last = candidate;
+            if (votes[candidate] * 2 > active) {
+                return -candidate - 2;
+            }
+            if (weakest < 0 || votes[candidate] < votes[weakest]
+                    || (votes[candidate] == votes[weakest] && roundVotes[0][candidate] <= roundVotes[0][weakest])) {
+                weakest = candidate;
+            }
+        }
+        return continuing == 1 ? -last - 2 : weakest;
+    }
+
+    private static int topChoice(long ranking, int eliminatedMask) {
+        while (ranking != 0) {
+            int candidate = (int) (ranking & 0xF) - 1;
+            if ((eliminatedMask & (1 << candidate)) == 0) {
+                return candidate;
+            }
+            ranking >>>= 4;
+        }
+        return -1;
+    }
+}
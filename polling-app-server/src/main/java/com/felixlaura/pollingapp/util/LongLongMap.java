@@ -0,0 +1,105 @@
+package com.felixlaura.pollingapp.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long to long, without boxing and without an entry object per mapping.
+ * Used on the read path, where a page of polls builds a few maps of choice and poll ids per request.
+ * Not thread safe. Long.MIN_VALUE is reserved as the free slot marker and cannot be used as a key.
+ */
+public class LongLongMap {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    public LongLongMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public long get(long key, long defaultValue) {
+        if (key == FREE) {
+            return defaultValue;
+        }
+        int slot = slotOf(key);
+        return keys[slot] == key ? values[slot] : defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        return key != FREE && keys[slotOf(key)] == key;
+    }
+
+    public void put(long key, long value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+        }
+        int slot = slotOf(key);
+        if (keys[slot] != key) {
+            if (2 * (size + 1) > keys.length) {
+                rehash(keys.length * 2);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void forEach(EntryConsumer consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != FREE) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public interface EntryConsumer {
+        void accept(long key, long value);
+    }
+
+    //Slot holding the key, or the free slot where it would go
+    private int slotOf(long key) {
+        int slot = mix(key) & mask;
+        while (keys[slot] != key && keys[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    //Load factor of at most one half keeps probe sequences short
+    static int capacityFor(int expectedSize) {
+        return Math.max(8, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1);
+    }
+
+    static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
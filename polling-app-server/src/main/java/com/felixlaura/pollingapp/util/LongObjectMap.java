@@ -0,0 +1,106 @@
+package com.felixlaura.pollingapp.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from long to an object, the LongLongMap counterpart for entities keyed by id.
+ * Not thread safe. Long.MIN_VALUE is reserved as the free slot marker and cannot be used as a key.
+ */
+public class LongObjectMap<V> {
+
+    private static final long FREE = Long.MIN_VALUE;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+
+    public LongObjectMap(int expectedSize) {
+        allocate(LongLongMap.capacityFor(expectedSize));
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        if (key == FREE) {
+            return null;
+        }
+        int slot = slotOf(key);
+        return keys[slot] == key ? (V) values[slot] : null;
+    }
+
+    public void put(long key, V value) {
+        if (key == FREE) {
+            throw new IllegalArgumentException("Long.MIN_VALUE cannot be used as a key");
+        }
+        int slot = slotOf(key);
+        if (keys[slot] != key) {
+            if (2 * (size + 1) > keys.length) {
+                rehash(keys.length * 2);
+                slot = slotOf(key);
+            }
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+    }
+
+    //Removes the key and returns its value, or null when it was not mapped
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        if (key == FREE) {
+            return null;
+        }
+        int slot = slotOf(key);
+        if (keys[slot] != key) {
+            return null;
+        }
+        V value = (V) values[slot];
+        //Backward shift: the keys probed past the removed one move up when their home slot allows it,
+        //so no probe sequence is cut by the freed slot
+        int free = slot;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = LongLongMap.mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+        size--;
+        return value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slotOf(long key) {
+        int slot = LongLongMap.mix(key) & mask;
+        while (keys[slot] != key && keys[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int slot = slotOf(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+}
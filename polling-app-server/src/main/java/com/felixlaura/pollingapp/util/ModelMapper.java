@@ -1,15 +1,20 @@
 package com.felixlaura.pollingapp.util;
 
+import com.felixlaura.pollingapp.cache.BallotTallies;
+import com.felixlaura.pollingapp.model.Choice;
 import com.felixlaura.pollingapp.model.Poll;
+import com.felixlaura.pollingapp.model.PollType;
 import com.felixlaura.pollingapp.model.User;
 import com.felixlaura.pollingapp.payload.ChoiceResponse;
 import com.felixlaura.pollingapp.payload.PollResponse;
+import com.felixlaura.pollingapp.payload.RunoffRound;
 import com.felixlaura.pollingapp.payload.UserSummary;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * We’ll be mapping the Poll entity to a PollResponse payload which contains
@@ -20,27 +25,37 @@ import java.util.stream.Collectors;
  */
 public class ModelMapper {
 
-    public static PollResponse mapPollToPollResponse(Poll poll, Map<Long, Long> choiceVotesMap, User creator, Long userVote) {
+    /**
+     * One pass over the choices builds the choice responses and the total. The caller passes the vote counts
+     * keyed by choice id and "now" once for the whole page.
+     */
+    public static PollResponse mapPollToPollResponse(Poll poll, LongLongMap choiceVotesMap, User creator, Long userVote, Instant now) {
         PollResponse pollResponse = new PollResponse();
         pollResponse.setId(poll.getId());
         pollResponse.setQuestion(poll.getQuestion());
         pollResponse.setCreationDateTime(poll.getCreatedAt());
         pollResponse.setExpirationDateTime(poll.getExpirationDateTime());
-        Instant now = Instant.now();
+        pollResponse.setStartDateTime(poll.getStartDateTime());
         pollResponse.setExpired(poll.getExpirationDateTime().isBefore(now));
+        pollResponse.setType(poll.getType());
+        if (poll.getType() == PollType.MULTIPLE) {
+            pollResponse.setMaxChoices(poll.getMaxChoices());
+        }
 
-        List<ChoiceResponse> choiceResponses = poll.getChoices().stream().map(choice -> {
+        List<Choice> choices = poll.getChoices();
+        List<ChoiceResponse> choiceResponses = new ArrayList<>(choices.size());
+        long totalVotes = 0;
+        for (Choice choice : choices) {
             ChoiceResponse choiceResponse = new ChoiceResponse();
             choiceResponse.setId(choice.getId());
             choiceResponse.setText(choice.getText());
 
-            if (choiceVotesMap.containsKey(choice.getId())) {
-                choiceResponse.setVoteCount(choiceVotesMap.get(choice.getId()));
-            } else {
-                choiceResponse.setVoteCount(0);
-            }
-            return choiceResponse;
-        }).collect(Collectors.toList());
+            //Votes of archived polls only remain as the final count on the choice
+            long voteCount = choiceVotesMap.get(choice.getId(), 0) + choice.getArchivedVoteCount();
+            choiceResponse.setVoteCount(voteCount);
+            totalVotes += voteCount;
+            choiceResponses.add(choiceResponse);
+        }
 
         pollResponse.setChoices(choiceResponses);
         UserSummary creatorSummary = new UserSummary(creator.getId(), creator.getUsername(), creator.getName());
@@ -50,9 +65,47 @@ public class ModelMapper {
             pollResponse.setSelectedChoice(userVote);
         }
 
-        long totalVotes = pollResponse.getChoices().stream().mapToLong(ChoiceResponse::getVoteCount).sum();
         pollResponse.setTotalVotes(totalVotes);
 
         return pollResponse;
     }
-}
\ No newline at end of file
+
+    /**
+     * Replaces the vote counts of a MULTIPLE or RANKED poll response with the ballot result,
+     * and adds the choices of the current user and the runoff rounds.
+     */
+    public static PollResponse applyBallotResult(PollResponse pollResponse, BallotTallies.BallotResult result) {
+        for (ChoiceResponse choiceResponse : pollResponse.getChoices()) {
+            choiceResponse.setVoteCount(result.getVoteCounts().get(choiceResponse.getId(), 0));
+        }
+        pollResponse.setTotalVotes(result.getBallots());
+
+        List<Long> selectedChoices = result.getSelectedChoices();
+        if (selectedChoices != null) {
+            pollResponse.setSelectedChoices(selectedChoices);
+            pollResponse.setSelectedChoice(selectedChoices.get(0));
+        }
+
+        pollResponse.setWinner(result.getWinner());
+        if (result.getRounds() != null) {
+            List<RunoffRound> rounds = new ArrayList<>(result.getRounds().size());
+            for (BallotTallies.BallotResult.Round round : result.getRounds()) {
+                RunoffRound runoffRound = new RunoffRound();
+                runoffRound.setRound(rounds.size() + 1);
+                //In the order of the poll's choices, eliminated choices are left out
+                Map<Long, Long> voteCounts = new LinkedHashMap<>();
+                for (ChoiceResponse choiceResponse : pollResponse.getChoices()) {
+                    if (round.getVoteCounts().containsKey(choiceResponse.getId())) {
+                        voteCounts.put(choiceResponse.getId(), round.getVoteCounts().get(choiceResponse.getId(), 0));
+                    }
+                }
+                runoffRound.setVoteCounts(voteCounts);
+                runoffRound.setEliminatedChoice(round.getEliminatedChoice());
+                runoffRound.setExhaustedBallots(round.getExhaustedBallots());
+                rounds.add(runoffRound);
+            }
+            pollResponse.setRounds(rounds);
+        }
+        return pollResponse;
+    }
+}
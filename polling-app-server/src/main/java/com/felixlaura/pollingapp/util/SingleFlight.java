@@ -0,0 +1,83 @@
+package com.felixlaura.pollingapp.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader, callers arriving while it runs
+ * wait for its result instead of hitting the database again. A failure of the loader is rethrown to every
+ * waiting caller. A caller that waits longer than timeoutMs gives up and loads on its own.
+ * Nothing is cached, the key is forgotten as soon as its load completes.
+ *
+ * Counted in app.singleflight.loads, app.singleflight.coalesced and app.singleflight.timeouts, tagged with the name.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMs;
+    private final Counter loads;
+    private final Counter coalesced;
+    private final Counter timeouts;
+
+    public SingleFlight(String name, long timeoutMs, MeterRegistry meterRegistry) {
+        this.timeoutMs = timeoutMs;
+        this.loads = Counter.builder("app.singleflight.loads")
+                .description("Loads that went to the database")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.coalesced = Counter.builder("app.singleflight.coalesced")
+                .description("Loads answered by a load already in flight")
+                .tag("name", name)
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("app.singleflight.timeouts")
+                .description("Callers that stopped waiting for the load in flight")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, future);
+        if (running == null) {
+            return lead(key, future, loader);
+        }
+
+        coalesced.increment();
+        try {
+            return running.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            timeouts.increment();
+            loads.increment();
+            return loader.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + key, ex);
+        }
+    }
+
+    private V lead(K key, CompletableFuture<V> future, Supplier<V> loader) {
+        loads.increment();
+        try {
+            V value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.felixlaura.pollingapp.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Vote counters kept in a memory-mapped file, outside the heap, so they survive a restart.
+ * The file is an open addressing table (linear probing) keyed by choice id, each slot holds
+ * the choice id, its poll id and the count. The header records the high-water vote id the counts
+ * are complete up to, and a dirty flag that is set while the counts and the high-water mark disagree.
+ * A file found dirty on open is not trusted.
+ *
+ * Layout: 64 bytes of header, then capacity slots of 24 bytes. Choice id 0 marks a free slot.
+ * Not thread safe.
+ */
+public class TallyFile implements Closeable {
+
+    private static final long MAGIC = 0x564F5445_54414C59L; //"VOTETALY"
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int SIZE_OFFSET = 16;
+    private static final int DIRTY_OFFSET = 20;
+    private static final int HIGH_WATER_OFFSET = 24;
+
+    private static final int SLOT_SIZE = 24;
+    private static final int POLL_OFFSET = 8;
+    private static final int COUNT_OFFSET = 16;
+
+    //A mapping is limited to 2 GB
+    private static final int MAX_CAPACITY = 1 << 26;
+
+    private final Path path;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int mask;
+    private int size;
+
+    private TallyFile(Path path, MappedByteBuffer buffer) {
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(CAPACITY_OFFSET);
+        this.mask = capacity - 1;
+        this.size = buffer.getInt(SIZE_OFFSET);
+    }
+
+    /**
+     * Opens the table stored at path, or creates an empty one with the given number of slots
+     * (rounded up to a power of two) when the file is missing or not a table of this version.
+     */
+    public static TallyFile open(Path path, int initialCapacity) throws IOException {
+        if (Files.exists(path)) {
+            MappedByteBuffer existing = map(path, Files.size(path));
+            if (existing != null && isValid(existing, Files.size(path))) {
+                return new TallyFile(path, existing);
+            }
+        }
+        return create(path, Integer.highestOneBit(Math.max(1024, Math.min(initialCapacity, MAX_CAPACITY) * 2 - 1)));
+    }
+
+    public long get(long choiceId) {
+        int slot = slotOf(choiceId);
+        return keyAt(slot) == choiceId ? buffer.getLong(offsetOf(slot) + COUNT_OFFSET) : 0;
+    }
+
+    public void add(long choiceId, long pollId, long delta) throws IOException {
+        if (choiceId == 0) {
+            throw new IllegalArgumentException("Choice id 0 cannot be counted");
+        }
+        int slot = slotOf(choiceId);
+        if (keyAt(slot) != choiceId) {
+            if (4 * (size + 1) > 3 * capacity) {
+                grow();
+                slot = slotOf(choiceId);
+            }
+            int offset = offsetOf(slot);
+            buffer.putLong(offset, choiceId);
+            buffer.putLong(offset + POLL_OFFSET, pollId);
+            buffer.putLong(offset + COUNT_OFFSET, 0);
+            buffer.putInt(SIZE_OFFSET, ++size);
+        }
+        int offset = offsetOf(slot) + COUNT_OFFSET;
+        buffer.putLong(offset, buffer.getLong(offset) + delta);
+    }
+
+    //Drops the counters of every choice of the poll, returns how many were dropped
+    public int removePoll(long pollId) {
+        long[] choiceIds = new long[8];
+        int found = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offsetOf(slot);
+            if (buffer.getLong(offset) != 0 && buffer.getLong(offset + POLL_OFFSET) == pollId) {
+                if (found == choiceIds.length) {
+                    choiceIds = Arrays.copyOf(choiceIds, found * 2);
+                }
+                choiceIds[found++] = buffer.getLong(offset);
+            }
+        }
+        //Entries move while removing, every choice is looked up again
+        for (int i = 0; i < found; i++) {
+            remove(slotOf(choiceIds[i]));
+        }
+        return found;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getHighWater() {
+        return buffer.getLong(HIGH_WATER_OFFSET);
+    }
+
+    public boolean isDirty() {
+        return buffer.getInt(DIRTY_OFFSET) != 0;
+    }
+
+    //Marks the counts as being ahead of the high-water mark until the next checkpoint
+    public void beginUpdate() {
+        buffer.putInt(DIRTY_OFFSET, 1);
+    }
+
+    //Records that the counts are complete up to highWater and writes the table to disk
+    public void checkpoint(long highWater) {
+        buffer.putLong(HIGH_WATER_OFFSET, highWater);
+        buffer.putInt(DIRTY_OFFSET, 0);
+        buffer.force();
+    }
+
+    @Override
+    public void close() {
+        buffer.force();
+        buffer = null;
+    }
+
+    //Backward shift deletion, the entries that follow in the probe sequence move up so no tombstone is needed
+    private void remove(int slot) {
+        int free = slot;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            long key = keyAt(next);
+            if (key == 0) {
+                break;
+            }
+            int home = LongLongMap.mix(key) & mask;
+            boolean movable = free <= next ? (home <= free || home > next) : (home <= free && home > next);
+            if (movable) {
+                copySlot(next, free);
+                free = next;
+            }
+        }
+        int offset = offsetOf(free);
+        buffer.putLong(offset, 0);
+        buffer.putLong(offset + POLL_OFFSET, 0);
+        buffer.putLong(offset + COUNT_OFFSET, 0);
+        buffer.putInt(SIZE_OFFSET, --size);
+    }
+
+    private void copySlot(int from, int to) {
+        int source = offsetOf(from);
+        int target = offsetOf(to);
+        buffer.putLong(target, buffer.getLong(source));
+        buffer.putLong(target + POLL_OFFSET, buffer.getLong(source + POLL_OFFSET));
+        buffer.putLong(target + COUNT_OFFSET, buffer.getLong(source + COUNT_OFFSET));
+    }
+
+    //Rehashes into a file twice as large, which then replaces this one
+    private void grow() throws IOException {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Tally file is full with " + size + " choices");
+        }
+        Path grown = path.resolveSibling(path.getFileName() + ".grow");
+        TallyFile target = create(grown, capacity * 2);
+        target.buffer.putInt(DIRTY_OFFSET, buffer.getInt(DIRTY_OFFSET));
+        target.buffer.putLong(HIGH_WATER_OFFSET, getHighWater());
+        for (int slot = 0; slot < capacity; slot++) {
+            int offset = offsetOf(slot);
+            long choiceId = buffer.getLong(offset);
+            if (choiceId != 0) {
+                target.add(choiceId, buffer.getLong(offset + POLL_OFFSET), buffer.getLong(offset + COUNT_OFFSET));
+            }
+        }
+        target.buffer.force();
+        Files.move(grown, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        buffer = target.buffer;
+        capacity = target.capacity;
+        mask = target.mask;
+        size = target.size;
+    }
+
+    private int slotOf(long choiceId) {
+        int slot = LongLongMap.mix(choiceId) & mask;
+        long key;
+        while ((key = keyAt(slot)) != choiceId && key != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private long keyAt(int slot) {
+        return buffer.getLong(offsetOf(slot));
+    }
+
+    //Fits an int as the capacity is at most MAX_CAPACITY
+    private static int offsetOf(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static TallyFile create(Path path, int capacity) throws IOException {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Tally file capacity is limited to " + MAX_CAPACITY + " slots");
+        }
+        Files.deleteIfExists(path);
+        MappedByteBuffer buffer = map(path, offsetOf(capacity));
+        buffer.putLong(MAGIC_OFFSET, MAGIC);
+        buffer.putInt(VERSION_OFFSET, VERSION);
+        buffer.putInt(CAPACITY_OFFSET, capacity);
+        buffer.putInt(SIZE_OFFSET, 0);
+        buffer.putInt(DIRTY_OFFSET, 0);
+        buffer.putLong(HIGH_WATER_OFFSET, 0);
+        return new TallyFile(path, buffer);
+    }
+
+    private static boolean isValid(MappedByteBuffer buffer, long fileSize) {
+        if (buffer.getLong(MAGIC_OFFSET) != MAGIC || buffer.getInt(VERSION_OFFSET) != VERSION) {
+            return false;
+        }
+        int capacity = buffer.getInt(CAPACITY_OFFSET);
+        return capacity > 0 && capacity <= MAX_CAPACITY && Integer.bitCount(capacity) == 1
+                && fileSize == offsetOf(capacity);
+    }
+
+    //The mapping stays valid after the channel is closed; null when the file is too small to hold a header
+    private static MappedByteBuffer map(Path path, long length) throws IOException {
+        if (length < HEADER_SIZE) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        }
+    }
+}
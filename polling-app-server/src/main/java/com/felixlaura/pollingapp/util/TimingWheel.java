@@ -0,0 +1,156 @@
+package com.felixlaura.pollingapp.util;
+
+/**
+ * Hierarchical timing wheel: five levels of 64 slots. Level 0 slots are one tick wide, each level above
+ * is 64 times coarser, so with one second ticks the wheel reaches about 34 years ahead.
+ * Scheduling is O(1), and every tick only touches one slot of level 0, plus one slot of a higher level
+ * when that level's boundary is crossed, whose timers then cascade down. Timers are plain linked nodes
+ * holding a long id and an int kind, indexed by id so an id holds at most one timer per kind:
+ * scheduling it again for the same tick is ignored, for another tick it replaces the pending timer.
+ * About 70 bytes per pending timer, so millions of pending deadlines stay cheap.
+ * Not thread safe, callers synchronize.
+ */
+public class TimingWheel {
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 5;
+
+    private final long tickMillis;
+    private final Timer[][] slots = new Timer[LEVELS][WHEEL_SIZE];
+    //Pending timers of every id, linked through Timer.sameId
+    private final LongObjectMap<Timer> byId = new LongObjectMap<>(64);
+    private long currentTick;
+    private int size;
+
+    public TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    public interface Expired {
+        void fire(long id, int kind);
+    }
+
+    /**
+     * Deadlines already passed fire on the next tick. Returns false when the id already had a timer of
+     * this kind for the same tick, which is kept as it is.
+     */
+    public boolean schedule(long deadlineMillis, long id, int kind) {
+        long tick = Math.max(divideRoundingUp(deadlineMillis), currentTick + 1);
+        for (Timer pending = byId.get(id); pending != null; pending = pending.sameId) {
+            if (pending.kind == kind) {
+                if (pending.tick == tick) {
+                    return false;
+                }
+                //Left in its slot and skipped when reached
+                pending.cancelled = true;
+                unlink(pending);
+                size--;
+                break;
+            }
+        }
+
+        Timer timer = new Timer(tick, id, kind);
+        timer.sameId = byId.get(id);
+        byId.put(id, timer);
+        insert(timer);
+        size++;
+        return true;
+    }
+
+    //Moves the wheel up to nowMillis, firing every timer whose deadline has been reached
+    public void advance(long nowMillis, Expired expired) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+
+            int slot = (int) (currentTick & WHEEL_MASK);
+            Timer timer = slots[0][slot];
+            slots[0][slot] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                if (!timer.cancelled) {
+                    unlink(timer);
+                    size--;
+                    expired.fire(timer.id, timer.kind);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    //When a level boundary is crossed the matching slot of that level is spread over the levels below
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * WHEEL_BITS;
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                return;
+            }
+            int slot = (int) ((currentTick >>> shift) & WHEEL_MASK);
+            Timer timer = slots[level][slot];
+            slots[level][slot] = null;
+            while (timer != null) {
+                Timer next = timer.next;
+                if (!timer.cancelled) {
+                    insert(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private void insert(Timer timer) {
+        long delta = timer.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * WHEEL_BITS)) {
+            level++;
+        }
+        int slot = (int) ((timer.tick >>> (level * WHEEL_BITS)) & WHEEL_MASK);
+        timer.next = slots[level][slot];
+        slots[level][slot] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        Timer first = byId.get(timer.id);
+        if (first == timer) {
+            if (timer.sameId != null) {
+                byId.put(timer.id, timer.sameId);
+            } else {
+                byId.remove(timer.id);
+            }
+            return;
+        }
+        for (Timer previous = first; previous != null; previous = previous.sameId) {
+            if (previous.sameId == timer) {
+                previous.sameId = timer.sameId;
+                return;
+            }
+        }
+    }
+
+    private long divideRoundingUp(long millis) {
+        return (millis + tickMillis - 1) / tickMillis;
+    }
+
+    private static class Timer {
+        private final long tick;
+        private final long id;
+        private final int kind;
+        private Timer next;
+        private Timer sameId;
+        private boolean cancelled;
+
+        private Timer(long tick, long id, int kind) {
+            this.tick = tick;
+            this.id = id;
+            this.kind = kind;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+-- Archive tier of VoteArchiveService: the archived flag of polls, the vote counts kept on the choices
+-- once their votes are archived, and the archived_votes table.
+-- Runs on baselined databases too. Those started with ddl-auto=update after the archive was added may
+-- already have some of it, so every step checks first.
+DROP PROCEDURE IF EXISTS add_vote_archive;
+DELIMITER //
+CREATE PROCEDURE add_vote_archive()
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = DATABASE() AND table_name = 'polls' AND column_name = 'archived') THEN
+        ALTER TABLE polls ADD COLUMN archived BIT NOT NULL DEFAULT 0;
+    END IF;
+
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = DATABASE() AND table_name = 'choices' AND column_name = 'archived_vote_count') THEN
+        ALTER TABLE choices ADD COLUMN archived_vote_count BIGINT NOT NULL DEFAULT 0;
+    END IF;
+
+    CREATE TABLE IF NOT EXISTS archived_votes (
+        id         BIGINT      NOT NULL,
+        poll_id    BIGINT      NOT NULL,
+        choice_id  BIGINT      NOT NULL,
+        user_id    BIGINT      NOT NULL,
+        created_at DATETIME(6) NOT NULL,
+        PRIMARY KEY (id)
+    ) ENGINE = InnoDB;
+
+    IF NOT EXISTS (SELECT 1 FROM information_schema.statistics
+                   WHERE table_schema = DATABASE() AND table_name = 'archived_votes'
+                     AND index_name = 'idx_archived_votes_user_poll') THEN
+        CREATE INDEX idx_archived_votes_user_poll ON archived_votes (user_id, poll_id);
+    END IF;
+END //
+DELIMITER ;
+
+CALL add_vote_archive();
+DROP PROCEDURE add_vote_archive;
@@ -0,0 +1,70 @@
+-- Baseline schema: the tables of the release before the migrations, as its entities mapped them.
+-- Databases created earlier by spring.jpa.hibernate.ddl-auto=update are baselined at this version
+-- (spring.flyway.baseline-on-migrate) and only get the migrations after it, so everything added since
+-- belongs in a later migration, never here.
+
+CREATE TABLE users (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    name       VARCHAR(40)  NOT NULL,
+    username   VARCHAR(15)  NOT NULL,
+    email      VARCHAR(40)  NOT NULL,
+    password   VARCHAR(100) NOT NULL,
+    created_at DATETIME(6)  NOT NULL,
+    updated_at DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username),
+    CONSTRAINT uk_users_email UNIQUE (email)
+) ENGINE = InnoDB;
+
+CREATE TABLE roles (
+    id   BIGINT NOT NULL AUTO_INCREMENT,
+    name ENUM ('ROLE_ADMIN', 'ROLE_USER'),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_roles_name UNIQUE (name)
+) ENGINE = InnoDB;
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL,
+    role_id BIGINT NOT NULL,
+    PRIMARY KEY (role_id, user_id),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id),
+    CONSTRAINT fk_user_roles_role FOREIGN KEY (role_id) REFERENCES roles (id)
+) ENGINE = InnoDB;
+
+-- Poll, choice and vote ids were generated by the database then. SnowflakeIdGenerator now assigns them,
+-- an explicit id takes precedence over AUTO_INCREMENT
+CREATE TABLE polls (
+    id                   BIGINT       NOT NULL AUTO_INCREMENT,
+    question             VARCHAR(140) NOT NULL,
+    expiration_date_time DATETIME(6)  NOT NULL,
+    create_by            BIGINT,
+    update_by            BIGINT,
+    created_at           DATETIME(6)  NOT NULL,
+    updated_at           DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE choices (
+    id      BIGINT      NOT NULL AUTO_INCREMENT,
+    poll_id BIGINT      NOT NULL,
+    text    VARCHAR(40) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_choices_poll FOREIGN KEY (poll_id) REFERENCES polls (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE votes (
+    id         BIGINT      NOT NULL AUTO_INCREMENT,
+    poll_id    BIGINT      NOT NULL,
+    choice_id  BIGINT      NOT NULL,
+    user_id    BIGINT      NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_votes_poll_user UNIQUE (poll_id, user_id),
+    CONSTRAINT fk_votes_poll FOREIGN KEY (poll_id) REFERENCES polls (id),
+    CONSTRAINT fk_votes_choice FOREIGN KEY (choice_id) REFERENCES choices (id),
+    CONSTRAINT fk_votes_user FOREIGN KEY (user_id) REFERENCES users (id)
+) ENGINE = InnoDB;
+
+-- Every new user gets ROLE_USER, the roles have to exist
+INSERT INTO roles (name) VALUES ('ROLE_USER'), ('ROLE_ADMIN');
@@ -0,0 +1,5 @@
+-- Databases created by the Boot 2 / Hibernate 5 schema update stored role names as VARCHAR(60),
+-- Hibernate 6 maps them to a MySQL ENUM and validates the column type.
+ALTER TABLE roles MODIFY name ENUM ('ROLE_ADMIN', 'ROLE_USER');
+
+INSERT IGNORE INTO roles (name) VALUES ('ROLE_USER'), ('ROLE_ADMIN');
@@ -0,0 +1,19 @@
+-- Indexes for the queries the application actually runs.
+-- QueryIndexUsageTests runs EXPLAIN on these query shapes and fails if one of them stops using its index.
+
+-- PollRepository.findByCreateBy: WHERE create_by = ? ORDER BY created_at
+CREATE INDEX idx_polls_create_by_created_at ON polls (create_by, created_at);
+
+-- PollService.getAllPolls: ORDER BY created_at, paged
+CREATE INDEX idx_polls_created_at_id ON polls (created_at, id);
+
+-- VoteRepository.findVotedPollIdsByUserId / countByUserId: WHERE user_id = ? ORDER BY created_at,
+-- poll_id is included so the index covers the query
+CREATE INDEX idx_votes_user_created_at ON votes (user_id, created_at, poll_id);
+
+-- VoteRepository.countByPollIdInGroupByChoiceId / countByPollIdGroupByChoiceId:
+-- WHERE poll_id IN (...) GROUP BY choice_id, answered from the index alone
+CREATE INDEX idx_votes_poll_choice ON votes (poll_id, choice_id);
+
+-- Archived side of findVotedPollIdsByUserId
+CREATE INDEX idx_archived_votes_user_created_at ON archived_votes (user_id, created_at, poll_id);
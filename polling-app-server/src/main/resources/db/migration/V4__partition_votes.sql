@@ -0,0 +1,53 @@
+-- Splits the votes table into hash partitions by poll_id.
+--
+-- Every tally query filters on poll_id (countByPollIdGroupByChoiceId, countByPollIdInGroupByChoiceId,
+-- findByUserIdAndPollId...), so MySQL prunes them down to the partitions holding those polls and each
+-- partition keeps its own, much smaller, indexes. Per-user queries (countByUserId, findVotedPollIdsByUserId)
+-- are scattered over all partitions and gathered by MySQL itself.
+--
+-- On an existing database this rewrites the whole table, run the migration during a maintenance window.
+
+-- Partitioned tables cannot have foreign keys, Vote maps its associations without constraints.
+DROP PROCEDURE IF EXISTS drop_votes_foreign_keys;
+DELIMITER //
+CREATE PROCEDURE drop_votes_foreign_keys()
+BEGIN
+    DECLARE done INT DEFAULT FALSE;
+    DECLARE fk_name VARCHAR(64);
+    DECLARE fks CURSOR FOR
+        SELECT constraint_name FROM information_schema.table_constraints
+        WHERE table_schema = DATABASE() AND table_name = 'votes' AND constraint_type = 'FOREIGN KEY';
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = TRUE;
+
+    OPEN fks;
+    drop_loop: LOOP
+        FETCH fks INTO fk_name;
+        IF done THEN
+            LEAVE drop_loop;
+        END IF;
+        SET @drop_fk = CONCAT('ALTER TABLE votes DROP FOREIGN KEY ', fk_name);
+        PREPARE statement FROM @drop_fk;
+        EXECUTE statement;
+        DEALLOCATE PREPARE statement;
+    END LOOP;
+    CLOSE fks;
+END //
+DELIMITER ;
+
+CALL drop_votes_foreign_keys();
+DROP PROCEDURE drop_votes_foreign_keys;
+
+-- Every unique key must contain the partitioning column: (poll_id, user_id) already does,
+-- the primary key gets poll_id added. Ids stay unique on their own (SnowflakeIdGenerator).
+ALTER TABLE votes DROP PRIMARY KEY, ADD PRIMARY KEY (id, poll_id);
+
+-- LINEAR HASH keeps rebalancing cheap: adding or removing partitions only splits or merges
+-- a few partitions instead of rewriting the whole table.
+ALTER TABLE votes PARTITION BY LINEAR HASH (poll_id) PARTITIONS 16;
+
+-- Rebalancing, when the table grows or shrinks:
+--   ALTER TABLE votes ADD PARTITION PARTITIONS 16;   -- 16 -> 32 partitions
+--   ALTER TABLE votes COALESCE PARTITION 8;          -- 32 -> 24 partitions
+-- Row counts per partition, to spot hot partitions:
+--   SELECT partition_name, table_rows FROM information_schema.partitions
+--   WHERE table_schema = DATABASE() AND table_name = 'votes';
@@ -0,0 +1,4 @@
+-- Stores the archive tier compressed. archived_votes is written once per expired poll by
+-- VoteArchiveService and only read for user history, so compression costs little and saves a lot.
+-- Requires innodb_file_per_table (the default).
+ALTER TABLE archived_votes ROW_FORMAT = COMPRESSED KEY_BLOCK_SIZE = 8;
@@ -0,0 +1,9 @@
+-- Per minute and per hour vote counts of every poll, flushed from the in-memory ring buffers
+-- of VoteTimelineService. Small rows keyed by poll, so the timeline of a poll is one range read.
+CREATE TABLE poll_vote_timeline (
+    poll_id      BIGINT                  NOT NULL,
+    granularity  ENUM ('MINUTE', 'HOUR') NOT NULL,
+    bucket_start DATETIME(6)             NOT NULL,
+    vote_count   BIGINT                  NOT NULL,
+    PRIMARY KEY (poll_id, granularity, bucket_start)
+) ENGINE = InnoDB;
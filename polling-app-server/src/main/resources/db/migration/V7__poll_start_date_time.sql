@@ -0,0 +1,5 @@
+-- Polls can be scheduled to open later. PollLifecycleScheduler loads the pending deadlines at startup
+-- with WHERE expiration_date_time > now, hence the index.
+ALTER TABLE polls ADD COLUMN start_date_time DATETIME(6) NULL;
+
+CREATE INDEX idx_polls_expiration_date_time ON polls (expiration_date_time);
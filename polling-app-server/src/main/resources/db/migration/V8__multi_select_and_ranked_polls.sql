@@ -0,0 +1,18 @@
+-- Polls taking several choices (MULTIPLE, up to max_choices) or a ranking of the choices (RANKED).
+-- Their votes are stored as one ballot per user, the votes table keeps its one choice per user and poll.
+ALTER TABLE polls
+    ADD COLUMN poll_type   ENUM ('SINGLE', 'MULTIPLE', 'RANKED') NOT NULL DEFAULT 'SINGLE',
+    ADD COLUMN max_choices INT                                  NOT NULL DEFAULT 1;
+
+-- Ballot ids are assigned by SnowflakeIdGenerator. choice_ids is the comma separated list of choice ids.
+CREATE TABLE ballots (
+    id         BIGINT       NOT NULL,
+    poll_id    BIGINT       NOT NULL,
+    user_id    BIGINT       NOT NULL,
+    choice_ids VARCHAR(255) NOT NULL,
+    created_at DATETIME(6)  NOT NULL,
+    updated_at DATETIME(6)  NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_ballots_poll_user UNIQUE (poll_id, user_id),
+    INDEX idx_ballots_user_id (user_id)
+) ENGINE = InnoDB;
@@ -0,0 +1,9 @@
+-- View count and HyperLogLog sketch of the distinct viewers of every poll, flushed in batches by PollViewService.
+-- Each node adds its views and merges its sketch (2^12 one-byte registers) into the row.
+CREATE TABLE poll_views (
+    poll_id    BIGINT          NOT NULL,
+    views      BIGINT          NOT NULL,
+    sketch     VARBINARY(4096) NOT NULL,
+    updated_at DATETIME(6)     NOT NULL,
+    PRIMARY KEY (poll_id)
+) ENGINE = InnoDB;
@@ -3,7 +3,7 @@ package com.felixlaura.pollingapp;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "app.nodeId=0")
 class PollingAppApplicationTests {
 
     @Test
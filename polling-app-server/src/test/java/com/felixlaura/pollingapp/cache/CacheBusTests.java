@@ -0,0 +1,182 @@
+package com.felixlaura.pollingapp.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs CacheBus instances outside Spring on a recording transport. The periodic flush is set far out,
+ * so batches only leave on batchSize or on an explicit flush.
+ */
+class CacheBusTests {
+
+    private final List<CacheBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void stopBuses() {
+        buses.forEach(CacheBus::stop);
+    }
+
+    @Test
+    void sendsFullBatchesInPublishOrder() {
+        RecordingTransport transport = new RecordingTransport();
+        CacheBus bus = bus(transport, 3, 1000);
+
+        for (long pollId = 1; pollId <= 7; pollId++) {
+            bus.publish(CacheEvent.pollArchived(pollId));
+        }
+        bus.flush();
+
+        List<Long> sent = new ArrayList<>();
+        for (List<CacheEvent> batch : transport.batches) {
+            assertTrue(batch.size() <= 3, "Batch of " + batch.size() + " events");
+            batch.forEach(event -> sent.add(event.getPollId()));
+        }
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L), sent);
+    }
+
+    @Test
+    void fullBatchIsSentWithoutWaitingForTheFlushInterval() throws InterruptedException {
+        RecordingTransport transport = new RecordingTransport();
+        CacheBus bus = bus(transport, 2, 1000);
+
+        bus.publish(CacheEvent.pollArchived(1L));
+        bus.publish(CacheEvent.pollArchived(2L));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (transport.batches.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, transport.batches.size());
+        assertEquals(2, transport.batches.get(0).size());
+    }
+
+    @Test
+    void overflowReplacesTheQueueWithInvalidateAll() {
+        RecordingTransport transport = new RecordingTransport();
+        CacheBus bus = bus(transport, 100, 5);
+        List<CacheEvent> local = new CopyOnWriteArrayList<>();
+        bus.subscribe(local::add);
+
+        for (long pollId = 1; pollId <= 6; pollId++) {
+            bus.publish(CacheEvent.pollArchived(pollId));
+        }
+        bus.flush();
+
+        //Local listeners still see every event, the other nodes are told to drop everything
+        assertEquals(6, local.size());
+        assertEquals(1, transport.batches.size());
+        assertEquals(1, transport.batches.get(0).size());
+        assertEquals(CacheEvent.Type.INVALIDATE_ALL, transport.batches.get(0).get(0).getType());
+    }
+
+    @Test
+    void failedSendIsReplacedByInvalidateAllOnTheNextFlush() {
+        RecordingTransport transport = new RecordingTransport();
+        CacheBus bus = bus(transport, 2, 1000);
+        transport.failing = true;
+
+        //Two batches, the first send fails and the second one is never tried
+        bus.publish(CacheEvent.pollArchived(1L));
+        bus.publish(CacheEvent.pollArchived(2L));
+        bus.publish(CacheEvent.pollArchived(3L));
+        bus.flush();
+        assertTrue(transport.batches.isEmpty());
+
+        transport.failing = false;
+        bus.flush();
+        bus.publish(CacheEvent.pollArchived(4L));
+        bus.flush();
+
+        assertEquals(2, transport.batches.size());
+        assertEquals(List.of(CacheEvent.Type.INVALIDATE_ALL),
+                transport.batches.get(0).stream().map(CacheEvent::getType).toList());
+        assertEquals(4L, transport.batches.get(1).get(0).getPollId());
+    }
+
+    @Test
+    void eventsReachOtherNodesButNotTheirOrigin() {
+        SharedTransport shared = new SharedTransport();
+        CacheBus first = bus(shared.node(), 100, 1000);
+        CacheBus second = bus(shared.node(), 100, 1000);
+        List<CacheEvent> firstSeen = new CopyOnWriteArrayList<>();
+        List<CacheEvent> secondSeen = new CopyOnWriteArrayList<>();
+        first.subscribe(firstSeen::add);
+        second.subscribe(secondSeen::add);
+
+        first.publish(CacheEvent.pollArchived(1L));
+        first.flush();
+
+        //The shared transport also hands the batch back to its sender, which must ignore it
+        assertEquals(1, firstSeen.size());
+        assertEquals(1, secondSeen.size());
+        assertEquals(1L, secondSeen.get(0).getPollId());
+        assertEquals(firstSeen.get(0).getOriginNode(), secondSeen.get(0).getOriginNode());
+    }
+
+    private CacheBus bus(CacheBusTransport transport, int batchSize, int maxQueueSize) {
+        CacheBus bus = new CacheBus();
+        ReflectionTestUtils.setField(bus, "transport", transport);
+        ReflectionTestUtils.setField(bus, "maxStalenessMs", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(bus, "batchSize", batchSize);
+        ReflectionTestUtils.setField(bus, "maxQueueSize", maxQueueSize);
+        bus.start();
+        buses.add(bus);
+        return bus;
+    }
+
+    private static class RecordingTransport implements CacheBusTransport {
+
+        private final List<List<CacheEvent>> batches = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+
+        @Override
+        public void start(Consumer<List<CacheEvent>> receiver) {
+        }
+
+        @Override
+        public void send(List<CacheEvent> batch) {
+            if (failing) {
+                throw new IllegalStateException("Broker unavailable");
+            }
+            batches.add(new ArrayList<>(batch));
+        }
+
+        @Override
+        public void stop() {
+        }
+    }
+
+    //Delivers every batch to all started nodes, the sender included, like a broker topic would
+    private static class SharedTransport {
+
+        private final List<Consumer<List<CacheEvent>>> receivers = new CopyOnWriteArrayList<>();
+
+        CacheBusTransport node() {
+            return new CacheBusTransport() {
+                @Override
+                public void start(Consumer<List<CacheEvent>> receiver) {
+                    receivers.add(receiver);
+                }
+
+                @Override
+                public void send(List<CacheEvent> batch) {
+                    receivers.forEach(receiver -> receiver.accept(batch));
+                }
+
+                @Override
+                public void stop() {
+                }
+            };
+        }
+    }
+}
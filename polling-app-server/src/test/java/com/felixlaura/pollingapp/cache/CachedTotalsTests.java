@@ -0,0 +1,101 @@
+package com.felixlaura.pollingapp.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CachedTotalsTests {
+
+    private final List<CachedTotals> started = new ArrayList<>();
+
+    @AfterEach
+    void stop() {
+        started.forEach(CachedTotals::stop);
+    }
+
+    @Test
+    void pollsCreatedDuringTheFirstCountAreKept() {
+        CachedTotals totals = totals(60_000);
+
+        long total = totals.get(CachedTotals.ALL_POLLS, () -> {
+            totals.onEvent(CacheEvent.pollCreated(1L, 7L, null, Instant.now()));
+            return 10;
+        });
+        assertEquals(11, total);
+    }
+
+    @Test
+    void recountAppliesTheDifferenceAndKeepsIncrements() throws InterruptedException {
+        CachedTotals totals = totals(0);
+        assertEquals(5, totals.get(CachedTotals.ALL_POLLS, () -> 5));
+
+        //Stale at once, the recount runs in the background while a poll is created
+        assertEquals(5, totals.get(CachedTotals.ALL_POLLS, () -> {
+            totals.onEvent(CacheEvent.pollCreated(1L, 7L, null, Instant.now()));
+            return 7;
+        }));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        long total;
+        do {
+            Thread.sleep(10);
+            total = totals.get(CachedTotals.ALL_POLLS, () -> 8);
+        } while (total != 8 && System.nanoTime() < deadline);
+        assertEquals(8, total);
+    }
+
+    @Test
+    void concurrentFirstCountsShareOneQuery() throws Exception {
+        CachedTotals totals = totals(60_000);
+        AtomicInteger counts = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> totals.get(CachedTotals.ALL_POLLS, () -> {
+                    counts.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 42;
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<Long> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, counts.get());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    private CachedTotals totals(long refreshMs) {
+        CachedTotals totals = new CachedTotals();
+        ReflectionTestUtils.setField(totals, "cacheBus", new CacheBus());
+        ReflectionTestUtils.setField(totals, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(totals, "singleFlightTimeoutMs", 10_000L);
+        ReflectionTestUtils.setField(totals, "refreshMs", refreshMs);
+        ReflectionTestUtils.setField(totals, "maxKeys", 100);
+        totals.subscribe();
+        started.add(totals);
+        return totals;
+    }
+}
@@ -0,0 +1,27 @@
+package com.felixlaura.pollingapp.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportControllerTests {
+
+    @Test
+    void gzipIsUsedWhenAccepted() {
+        assertTrue(ExportController.acceptsGzip("gzip"));
+        assertTrue(ExportController.acceptsGzip("deflate, gzip;q=0.5"));
+        assertTrue(ExportController.acceptsGzip("x-gzip"));
+        assertTrue(ExportController.acceptsGzip("br, *;q=0.1"));
+    }
+
+    @Test
+    void gzipIsNotUsedWhenRefusedOrMissing() {
+        assertFalse(ExportController.acceptsGzip(null));
+        assertFalse(ExportController.acceptsGzip("identity"));
+        assertFalse(ExportController.acceptsGzip("gzip;q=0"));
+        assertFalse(ExportController.acceptsGzip("gzip; q=0.0, deflate"));
+        assertFalse(ExportController.acceptsGzip("*, gzip;q=0"));
+        assertFalse(ExportController.acceptsGzip("*;q=0"));
+    }
+}
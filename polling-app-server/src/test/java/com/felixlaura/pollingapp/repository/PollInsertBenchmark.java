@@ -0,0 +1,144 @@
+package com.felixlaura.pollingapp.repository;
+
+import com.felixlaura.pollingapp.util.SnowflakeIdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of a poll with six choices, the statements Hibernate sends for createPoll.
+ * identityInserts is the former mapping: with IDENTITY ids every row is its own INSERT, the generated key is read
+ * back before the next one, so nothing can be batched. assignedIdBatch is the current one: SnowflakeIdGenerator
+ * assigns the ids, the poll goes out alone and the choices as one batch, rewritten into a single multi-row INSERT
+ * (rewriteBatchedStatements). One operation is one poll.
+ *
+ * Needs a MySQL database, by default the one of application.properties. The benchmark creates and drops its
+ * own bench_* tables:
+ *   ./mvnw -Pbenchmarks test -DskipTests -Djmh.args="PollInsertBenchmark -jvmArgsAppend -Dbenchmark.datasource.url=jdbc:mysql://..."
+ * benchmark.datasource.username and benchmark.datasource.password default to root / password.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PollInsertBenchmark {
+
+    private static final String URL = "jdbc:mysql://localhost:3306/polling_app?useSSL=false&serverTimezone=UTC"
+            + "&rewriteBatchedStatements=true";
+
+    private static final int CHOICES = 6;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(System.getProperty("benchmark.datasource.url", URL),
+                System.getProperty("benchmark.datasource.username", "root"),
+                System.getProperty("benchmark.datasource.password", "password"));
+        SnowflakeIdGenerator.setNodeId(0);
+        try (Statement statement = connection.createStatement()) {
+            dropTables(statement);
+            for (String kind : new String[]{"identity", "assigned"}) {
+                String id = kind.equals("identity") ? "BIGINT NOT NULL AUTO_INCREMENT" : "BIGINT NOT NULL";
+                statement.execute("CREATE TABLE bench_" + kind + "_polls (id " + id + ", question VARCHAR(140) NOT NULL, "
+                        + "expiration_date_time DATETIME(6) NOT NULL, created_at DATETIME(6) NOT NULL, PRIMARY KEY (id)) ENGINE = InnoDB");
+                statement.execute("CREATE TABLE bench_" + kind + "_choices (id " + id + ", poll_id BIGINT NOT NULL, "
+                        + "text VARCHAR(40) NOT NULL, PRIMARY KEY (id)) ENGINE = InnoDB");
+            }
+        }
+        connection.setAutoCommit(false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.setAutoCommit(true);
+        try (Statement statement = connection.createStatement()) {
+            dropTables(statement);
+        }
+        connection.close();
+    }
+
+    @Benchmark
+    public long identityInserts() throws SQLException {
+        long pollId;
+        try (PreparedStatement poll = connection.prepareStatement("INSERT INTO bench_identity_polls "
+                + "(question, expiration_date_time, created_at) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            bindPoll(poll, 1);
+            poll.executeUpdate();
+            pollId = generatedKey(poll);
+        }
+        try (PreparedStatement choice = connection.prepareStatement("INSERT INTO bench_identity_choices "
+                + "(poll_id, text) VALUES (?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < CHOICES; i++) {
+                choice.setLong(1, pollId);
+                choice.setString(2, "Choice " + i);
+                choice.executeUpdate();
+                generatedKey(choice);
+            }
+        }
+        connection.commit();
+        return pollId;
+    }
+
+    @Benchmark
+    public long assignedIdBatch() throws SQLException {
+        long pollId = SnowflakeIdGenerator.nextId();
+        try (PreparedStatement poll = connection.prepareStatement("INSERT INTO bench_assigned_polls "
+                + "(id, question, expiration_date_time, created_at) VALUES (?, ?, ?, ?)")) {
+            poll.setLong(1, pollId);
+            bindPoll(poll, 2);
+            poll.executeUpdate();
+        }
+        try (PreparedStatement choice = connection.prepareStatement("INSERT INTO bench_assigned_choices "
+                + "(id, poll_id, text) VALUES (?, ?, ?)")) {
+            for (int i = 0; i < CHOICES; i++) {
+                choice.setLong(1, SnowflakeIdGenerator.nextId());
+                choice.setLong(2, pollId);
+                choice.setString(3, "Choice " + i);
+                choice.addBatch();
+            }
+            choice.executeBatch();
+        }
+        connection.commit();
+        return pollId;
+    }
+
+    private static void bindPoll(PreparedStatement poll, int firstIndex) throws SQLException {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        poll.setString(firstIndex, "Which one?");
+        poll.setTimestamp(firstIndex + 1, new Timestamp(now.getTime() + TimeUnit.DAYS.toMillis(1)));
+        poll.setTimestamp(firstIndex + 2, now);
+    }
+
+    private static long generatedKey(PreparedStatement statement) throws SQLException {
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            keys.next();
+            return keys.getLong(1);
+        }
+    }
+
+    private static void dropTables(Statement statement) throws SQLException {
+        statement.execute("DROP TABLE IF EXISTS bench_identity_choices, bench_identity_polls, "
+                + "bench_assigned_choices, bench_assigned_polls");
+    }
+}
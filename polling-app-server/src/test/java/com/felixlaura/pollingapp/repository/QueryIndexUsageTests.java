@@ -0,0 +1,192 @@
+package com.felixlaura.pollingapp.repository;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Calls the PollRepository and VoteRepository queries the application runs, captures the SQL Hibernate
+ * generates for them with a StatementInspector and runs EXPLAIN on it against the migrated schema.
+ * A test fails when the optimizer does not pick the index V3__query_indexes.sql created for the query.
+ * Enough rows are seeded (and the tables analyzed) for an index to beat a table scan.
+ */
+@SpringBootTest(properties = {
+        "app.nodeId=0",
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+                "com.felixlaura.pollingapp.repository.QueryIndexUsageTests$SqlCapture"
+})
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryIndexUsageTests {
+
+    //Seeded rows use ids from here up, far above the ids SnowflakeIdGenerator hands out today
+    private static final long BASE_ID = 9_000_000_000_000_000_000L;
+
+    private static final int CREATORS = 20;
+    private static final int POLLS_PER_CREATOR = 100;
+    private static final int VOTERS = 400;
+    private static final int VOTES_PER_VOTER = 20;
+
+    private static final long CREATOR_ID = BASE_ID + 1;
+    private static final long VOTER_ID = BASE_ID + CREATORS + 1;
+
+    private static final Pageable LISTING_PAGE = PageRequest.of(0, 30, Sort.Direction.ASC, "createdAt");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PollRepository pollRepository;
+
+    @Autowired
+    private VoteRepository voteRepository;
+
+    @BeforeAll
+    void seed() {
+        deleteSeededRows();
+        Instant start = Instant.now().minus(30, ChronoUnit.DAYS);
+        int polls = CREATORS * POLLS_PER_CREATOR;
+
+        List<Object[]> pollRows = new ArrayList<>(polls);
+        for (int i = 0; i < polls; i++) {
+            Timestamp createdAt = Timestamp.from(start.plusSeconds(i * 60L));
+            long creator = CREATOR_ID + (i % CREATORS);
+            pollRows.add(new Object[]{BASE_ID + i, "Seeded poll " + i, Timestamp.from(start.plus(60, ChronoUnit.DAYS)),
+                    creator, creator, createdAt, createdAt});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO polls (id, question, expiration_date_time, archived, create_by, update_by, " +
+                "created_at, updated_at) VALUES (?, ?, ?, 0, ?, ?, ?, ?)", pollRows);
+
+        //Every voter votes in VOTES_PER_VOTER polls, a quarter of them already archived
+        List<Object[]> voteRows = new ArrayList<>();
+        List<Object[]> archivedRows = new ArrayList<>();
+        for (int voter = 0; voter < VOTERS; voter++) {
+            for (int v = 0; v < VOTES_PER_VOTER; v++) {
+                long pollId = BASE_ID + (voter * 7L + v * 101L) % polls;
+                long voteId = BASE_ID + (long) voter * VOTES_PER_VOTER + v;
+                Timestamp createdAt = Timestamp.from(start.plusSeconds(voteId - BASE_ID));
+                Object[] row = {voteId, pollId, pollId, VOTER_ID + voter, createdAt};
+                (v % 4 == 0 ? archivedRows : voteRows).add(row);
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO votes (id, poll_id, choice_id, user_id, created_at, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", voteRows.stream()
+                .map(row -> new Object[]{row[0], row[1], row[2], row[3], row[4], row[4]}).collect(Collectors.toList()));
+        jdbcTemplate.batchUpdate("INSERT INTO archived_votes (id, poll_id, choice_id, user_id, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)", archivedRows);
+
+        jdbcTemplate.execute("ANALYZE TABLE polls, votes, archived_votes");
+    }
+
+    @AfterAll
+    void deleteSeededRows() {
+        jdbcTemplate.update("DELETE FROM votes WHERE id >= ?", BASE_ID);
+        jdbcTemplate.update("DELETE FROM archived_votes WHERE id >= ?", BASE_ID);
+        jdbcTemplate.update("DELETE FROM polls WHERE id >= ?", BASE_ID);
+    }
+
+    @Test
+    void findByCreateByUsesCreatorIndex() {
+        String sql = capture(() -> pollRepository.findByCreateBy(CREATOR_ID, LISTING_PAGE));
+        assertUsesIndices(sql, List.of(CREATOR_ID, LISTING_PAGE.getPageSize()), "idx_polls_create_by_created_at");
+    }
+
+    @Test
+    void pollListingUsesCreatedAtIndex() {
+        //The listing sorts by createdAt only, the Slice reads one row more than the page
+        String sql = capture(() -> pollRepository.findAllBy(LISTING_PAGE));
+        assertUsesIndices(sql, List.of(LISTING_PAGE.getPageSize() + 1), "idx_polls_created_at_id");
+    }
+
+    @Test
+    void findVotedPollIdsByUserIdUsesUserIndexes() {
+        String sql = capture(() -> voteRepository.findVotedPollIdsByUserId(VOTER_ID, PageRequest.of(0, 30)));
+        assertUsesIndices(sql, List.of(VOTER_ID, VOTER_ID, 30),
+                "idx_votes_user_created_at", "idx_archived_votes_user_created_at");
+    }
+
+    @Test
+    void countByUserIdUsesUserIndexes() {
+        String sql = capture(() -> voteRepository.countByUserId(VOTER_ID));
+        assertUsesIndices(sql, List.of(VOTER_ID, VOTER_ID),
+                "idx_votes_user_created_at", "idx_archived_votes_user_created_at");
+    }
+
+    @Test
+    void voteTalliesUseCoveringPollChoiceIndex() {
+        List<Long> pollIds = List.of(BASE_ID + 1, BASE_ID + 2, BASE_ID + 3);
+        String sql = capture(() -> voteRepository.countByPollIdInGroupByChoiceId(pollIds));
+        assertUsesIndices(sql, new ArrayList<>(pollIds), "idx_votes_poll_choice");
+    }
+
+    @Test
+    void userVotesOfPollsUseUniqueKey() {
+        List<Long> pollIds = List.of(BASE_ID + 1, BASE_ID + 2, BASE_ID + 3);
+        String sql = capture(() -> voteRepository.findByUserIdAndPollIdIn(VOTER_ID, pollIds));
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(VOTER_ID);
+        parameters.addAll(pollIds);
+        assertUsesIndices(sql, parameters, "uk_votes_poll_user");
+    }
+
+    //First statement the call sends to the database
+    private static String capture(Runnable call) {
+        List<String> statements = new ArrayList<>();
+        SqlCapture.statements.set(statements);
+        try {
+            call.run();
+        } finally {
+            SqlCapture.statements.remove();
+        }
+        assertFalse(statements.isEmpty(), "No SQL was captured");
+        return statements.get(0);
+    }
+
+    //Every index must be the key of one of the plan rows, being among possible_keys is not enough
+    private void assertUsesIndices(String sql, List<?> parameters, String... indices) {
+        assertEquals(parameters.size(), sql.chars().filter(c -> c == '?').count(),
+                "Parameters do not match the placeholders of: " + sql);
+        List<Map<String, Object>> plan = jdbcTemplate.queryForList("EXPLAIN " + sql, parameters.toArray());
+        List<Object> keys = plan.stream().map(row -> row.get("key")).collect(Collectors.toList());
+        for (String index : indices) {
+            assertTrue(keys.contains(index), "Index " + index + " is not used by: " + sql + " (plan: " + plan + ")");
+        }
+    }
+
+    /**
+     * Records the SQL Hibernate prepares on the test thread while a capture is running,
+     * statements of the schedulers running on other threads are ignored.
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        private static final ThreadLocal<List<String>> statements = new ThreadLocal<>();
+
+        @Override
+        public String inspect(String sql) {
+            List<String> captured = statements.get();
+            if (captured != null) {
+                captured.add(sql);
+            }
+            return sql;
+        }
+    }
+}
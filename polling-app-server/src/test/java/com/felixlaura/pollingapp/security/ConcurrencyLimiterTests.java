@@ -0,0 +1,111 @@
+package com.felixlaura.pollingapp.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Feeds ConcurrencyLimiter latency samples while every slot it allows is taken, as under load,
+ * since the limit only grows while at least half of it is used.
+ */
+class ConcurrencyLimiterTests {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private static final int MIN_LIMIT = 4;
+    private static final int MAX_LIMIT = 60;
+
+    @Test
+    void growsUpToMaxLimitWhileLatencyIsSteady() {
+        ConcurrencyLimiter limiter = limiter();
+        for (int i = 0; i < 500; i++) {
+            sampleUnderLoad(limiter, FAST);
+            assertTrue(limiter.getLimit() <= MAX_LIMIT);
+        }
+        assertEquals(MAX_LIMIT, limiter.getLimit());
+    }
+
+    @Test
+    void idlePoolDoesNotGrow() {
+        ConcurrencyLimiter limiter = limiter();
+        for (int i = 0; i < 500; i++) {
+            assertTrue(limiter.tryAcquire(true));
+            limiter.onSuccess(FAST);
+        }
+        assertEquals(20, limiter.getLimit());
+    }
+
+    @Test
+    void dropsWhenLatencyRisesAndRecoversAfterwards() {
+        ConcurrencyLimiter limiter = limiter();
+        for (int i = 0; i < 500; i++) {
+            sampleUnderLoad(limiter, FAST);
+        }
+        int steady = limiter.getLimit();
+
+        for (int i = 0; i < 100; i++) {
+            sampleUnderLoad(limiter, SLOW);
+            assertTrue(limiter.getLimit() >= MIN_LIMIT);
+        }
+        int slowed = limiter.getLimit();
+        assertTrue(slowed < steady / 2, "Limit " + slowed + " did not drop from " + steady);
+
+        for (int i = 0; i < 500; i++) {
+            sampleUnderLoad(limiter, FAST);
+        }
+        assertEquals(MAX_LIMIT, limiter.getLimit());
+    }
+
+    @Test
+    void failuresBackOffDownToMinLimit() {
+        ConcurrencyLimiter limiter = limiter();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquire(true));
+            limiter.onFailure();
+            assertTrue(limiter.getLimit() >= MIN_LIMIT);
+        }
+        assertEquals(MIN_LIMIT, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void anonymousCallersOnlyGetTheirShare() {
+        ConcurrencyLimiter limiter = limiter();
+        //70% of 20
+        for (int i = 0; i < 14; i++) {
+            assertTrue(limiter.tryAcquire(false));
+        }
+        assertFalse(limiter.tryAcquire(false));
+        for (int i = 0; i < 6; i++) {
+            assertTrue(limiter.tryAcquire(true));
+        }
+        assertFalse(limiter.tryAcquire(true));
+    }
+
+    @Test
+    void ignoredRequestsReleaseTheirSlotWithoutASample() {
+        ConcurrencyLimiter limiter = limiter();
+        assertTrue(limiter.tryAcquire(true));
+        limiter.onIgnore();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(20, limiter.getLimit());
+    }
+
+    //The application's settings for the votes pool
+    private static ConcurrencyLimiter limiter() {
+        return new ConcurrencyLimiter(20, MIN_LIMIT, MAX_LIMIT, 0.2, 0.9, 0.7);
+    }
+
+    //Takes every free slot, then completes one request
+    private static void sampleUnderLoad(ConcurrencyLimiter limiter, long rttNanos) {
+        while (limiter.tryAcquire(true)) {
+            //Held by a request in flight
+        }
+        limiter.onSuccess(rttNanos);
+    }
+}
@@ -0,0 +1,102 @@
+package com.felixlaura.pollingapp.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives RateLimiter with explicit clock values through the package-private tryAcquire(key, now).
+ */
+class RateLimiterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void refusesOnceCapacityIsUsedAndRefillsOverTime() {
+        //60 per minute is one token per second
+        RateLimiter limiter = new RateLimiter(64, 3, 60);
+        long now = 1_000 * SECOND;
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("ip:1", now));
+        }
+        long wait = limiter.tryAcquire("ip:1", now);
+        assertTrue(wait > 0 && wait <= SECOND, "Wait of about one token expected, got " + wait);
+
+        assertEquals(0, limiter.tryAcquire("ip:1", now + SECOND));
+        assertTrue(limiter.tryAcquire("ip:1", now + SECOND) > 0);
+    }
+
+    @Test
+    void keysHaveTheirOwnBuckets() {
+        RateLimiter limiter = new RateLimiter(64, 1, 60);
+        long now = 1_000 * SECOND;
+
+        assertEquals(0, limiter.tryAcquire("ip:1", now));
+        assertTrue(limiter.tryAcquire("ip:1", now) > 0);
+        assertEquals(0, limiter.tryAcquire("ip:2", now));
+    }
+
+    @Test
+    void throttledBucketIsNotEvictedByCrowding() {
+        //4 slots, every key probes all of them
+        RateLimiter limiter = new RateLimiter(4, 2, 60);
+        long now = 1_000 * SECOND;
+
+        assertEquals(0, limiter.tryAcquire("throttled", now));
+        assertEquals(0, limiter.tryAcquire("throttled", now));
+        assertTrue(limiter.tryAcquire("throttled", now) > 0);
+
+        //The other slots are taken by clients below capacity, a new client finds nothing to replace
+        assertEquals(0, limiter.tryAcquire("b", now));
+        assertEquals(0, limiter.tryAcquire("c", now));
+        assertEquals(0, limiter.tryAcquire("d", now));
+        long wait = limiter.tryAcquire("newcomer", now);
+        assertTrue(wait > 0, "A newcomer must not take the slot of a bucket below capacity");
+
+        //Still throttled, its bucket was kept
+        assertTrue(limiter.tryAcquire("throttled", now) > 0);
+
+        //Once the buckets are full again the newcomer replaces an idle one
+        assertEquals(0, limiter.tryAcquire("newcomer", now + wait + 2 * SECOND));
+    }
+
+    @Test
+    void concurrentCallersNeverTakeMoreThanCapacity() throws InterruptedException {
+        RateLimiter limiter = new RateLimiter(64, 100, 60);
+        long now = 1_000 * SECOND;
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ex) {
+                    return;
+                }
+                for (int i = 0; i < 100; i++) {
+                    if (limiter.tryAcquire("user:1", now) == 0) {
+                        allowed.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(100, allowed.get());
+    }
+}
@@ -0,0 +1,183 @@
+package com.felixlaura.pollingapp.service;
+
+import com.felixlaura.pollingapp.util.ExportWriter;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ExportServiceTests {
+
+    private static final long ROWS = 3_000_000;
+    private static final long CHECKPOINT = 100_000;
+    private static final long MAX_BUFFERED = 128 * 1024;
+
+    private static final Timestamp CREATED_AT = Timestamp.from(Instant.parse("2024-01-02T03:04:05Z"));
+
+    @Test
+    void votesExportWritesTheRankOfRankedBallotChoices() throws IOException {
+        Object[][] rows = {
+                {1L, 10L, "Red", 5L, CREATED_AT, null},
+                {2L, 11L, "Blue", 6L, CREATED_AT, 1L},
+                {2L, 10L, "Red", 6L, CREATED_AT, 2L}};
+        GeneratedRows jdbcTemplate = new GeneratedRows(rows.length, i -> rows[(int) i]);
+        StringWriter out = new StringWriter();
+
+        service(jdbcTemplate).exportPollVotes(7L, ExportWriter.create(ExportWriter.CSV, out));
+
+        //Votes, archived votes and ballots of the poll
+        assertEquals(List.of(7L, 7L, 7L), jdbcTemplate.args);
+        assertEquals("voteId,choiceId,choiceText,userId,createdAt,rank\r\n" +
+                "1,10,Red,5,2024-01-02T03:04:05Z,\r\n" +
+                "2,11,Blue,6,2024-01-02T03:04:05Z,1\r\n" +
+                "2,10,Red,6,2024-01-02T03:04:05Z,2\r\n", out.toString());
+    }
+
+    @Test
+    void resultsExportNamesThePollType() throws IOException {
+        Object[][] rows = {
+                {3L, "Best colour?", "RANKED", null, 10L, "Red", 4L}};
+        GeneratedRows jdbcTemplate = new GeneratedRows(rows.length, i -> rows[(int) i]);
+        StringWriter out = new StringWriter();
+
+        service(jdbcTemplate).exportPollResults(9L, ExportWriter.create(ExportWriter.CSV, out));
+
+        assertEquals(List.of(9L), jdbcTemplate.args);
+        assertEquals("pollId,question,pollType,expirationDateTime,choiceId,choiceText,voteCount\r\n" +
+                "3,Best colour?,RANKED,,10,Red,4\r\n", out.toString());
+    }
+
+    @Test
+    void rowsReachTheOutputWhileTheCursorIsRead() throws IOException {
+        CountingOutputStream sink = new CountingOutputStream();
+        AtomicLong checkpoints = new AtomicLong();
+        //Every row is at least 30 bytes, the writers in front of the sink hold at most their buffers
+        GeneratedRows jdbcTemplate = new GeneratedRows(ROWS, i -> {
+            if (i > 0 && i % CHECKPOINT == 0) {
+                assertTrue(sink.count >= i * 30 - MAX_BUFFERED,
+                        "Only " + sink.count + " bytes were written after " + i + " rows");
+                checkpoints.incrementAndGet();
+            }
+            return new Object[]{i, 10L + i % 4, "Choice " + i % 4, i % 1000, CREATED_AT, null};
+        });
+        Writer writer = new BufferedWriter(new OutputStreamWriter(sink, StandardCharsets.UTF_8), 64 * 1024);
+
+        service(jdbcTemplate).exportPollVotes(7L, ExportWriter.create(ExportWriter.CSV, writer));
+
+        assertEquals(ROWS / CHECKPOINT - 1, checkpoints.get());
+        assertTrue(sink.count >= ROWS * 30);
+    }
+
+    private static ExportService service(JdbcTemplate jdbcTemplate) {
+        ExportService service = new ExportService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "fetchSize", Integer.MIN_VALUE);
+        return service;
+    }
+
+    //Hands the export a forward-only cursor over rows generated one at a time, nothing is held in memory
+    private static class GeneratedRows extends JdbcTemplate {
+
+        private final long rowCount;
+        private final LongFunction<Object[]> rowAt;
+        private final List<Object> args = new ArrayList<>();
+
+        private GeneratedRows(long rowCount, LongFunction<Object[]> rowAt) {
+            this.rowCount = rowCount;
+            this.rowAt = rowAt;
+        }
+
+        @Override
+        public void query(PreparedStatementCreator psc, RowCallbackHandler rch) {
+            try {
+                Connection connection = mock(Connection.class);
+                PreparedStatement statement = mock(PreparedStatement.class);
+                when(connection.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(statement);
+                doAnswer(invocation -> args.add(invocation.getArgument(1))).when(statement).setObject(anyInt(), any());
+                psc.createPreparedStatement(connection);
+
+                Cursor cursor = new Cursor();
+                ResultSet rs = cursor.resultSet();
+                for (long i = 0; i < rowCount; i++) {
+                    cursor.row = rowAt.apply(i);
+                    rch.processRow(rs);
+                }
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    //Counts the bytes and drops them
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    //Current row of a GeneratedRows cursor, read through the ResultSet getters the export uses
+    private static class Cursor {
+
+        private Object[] row;
+        private boolean wasNull;
+
+        private ResultSet resultSet() {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                    (proxy, method, methodArgs) -> {
+                        if (method.getName().equals("wasNull")) {
+                            return wasNull;
+                        }
+                        Object value = row[(Integer) methodArgs[0] - 1];
+                        wasNull = value == null;
+                        switch (method.getName()) {
+                            case "getLong":
+                                return value != null ? (Long) value : 0L;
+                            case "getString":
+                                return value != null ? value.toString() : null;
+                            case "getTimestamp":
+                                return value;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
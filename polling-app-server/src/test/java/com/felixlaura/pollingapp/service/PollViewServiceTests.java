@@ -0,0 +1,97 @@
+package com.felixlaura.pollingapp.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PollViewServiceTests {
+
+    private static final long KNOWN_POLL = 1L;
+    private static final long UNKNOWN_POLL = 2L;
+
+    private final StoredViews jdbcTemplate = new StoredViews(Map.of(KNOWN_POLL, 40L));
+
+    @Test
+    void firstViewReadsTheStoredCountOnce() {
+        PollViewService service = service(true);
+        service.recordView(KNOWN_POLL, "user:1");
+        service.recordView(KNOWN_POLL, "user:2");
+        service.recordView(KNOWN_POLL, "user:1");
+
+        assertEquals(1, jdbcTemplate.queries.get());
+        assertArrayEquals(new long[]{43, 2}, service.getViews(KNOWN_POLL));
+    }
+
+    @Test
+    void unknownPollsAreRememberedAsMisses() {
+        PollViewService service = service(true);
+        for (int i = 0; i < 5; i++) {
+            service.recordView(UNKNOWN_POLL, "user:1");
+        }
+        assertEquals(1, jdbcTemplate.queries.get());
+        assertNull(service.getViews(UNKNOWN_POLL));
+    }
+
+    @Test
+    void disabledServiceReadsNothing() {
+        PollViewService service = service(false);
+        service.recordView(KNOWN_POLL, "user:1");
+
+        assertEquals(0, jdbcTemplate.queries.get());
+        assertNull(service.getViews(KNOWN_POLL));
+        assertEquals(0, service.viewEpoch());
+    }
+
+    private PollViewService service(boolean enabled) {
+        PollViewService service = new PollViewService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "enabled", enabled);
+        ReflectionTestUtils.setField(service, "flushMs", 30_000L);
+        ReflectionTestUtils.setField(service, "batchSize", 500);
+        ReflectionTestUtils.setField(service, "singleFlightTimeoutMs", 2_000L);
+        service.start();
+        return service;
+    }
+
+    //Answers the load query from stored view counts, without sketches
+    private static class StoredViews extends JdbcTemplate {
+
+        private final Map<Long, Long> views;
+        private final AtomicInteger queries = new AtomicInteger();
+
+        private StoredViews(Map<Long, Long> views) {
+            this.views = views;
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            queries.incrementAndGet();
+            Long stored = views.get((Long) args[0]);
+            if (stored == null) {
+                return List.of();
+            }
+            try {
+                ResultSet row = mock(ResultSet.class);
+                when(row.getLong(1)).thenReturn(stored);
+                return List.of(rowMapper.mapRow(row, 0));
+            } catch (SQLException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+}
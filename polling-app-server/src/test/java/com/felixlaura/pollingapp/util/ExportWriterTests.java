@@ -0,0 +1,35 @@
+package com.felixlaura.pollingapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExportWriterTests {
+
+    @Test
+    void csvQuotesSeparatorsAndQuotes() throws IOException {
+        assertEquals("\"a,b\",\"say \"\"hi\"\"\",plain\r\n", csvRow("a,b", "say \"hi\"", "plain"));
+    }
+
+    @Test
+    void csvKeepsFormulasAsText() throws IOException {
+        assertEquals("'=1+2,'+1,'-1,'@SUM(A1),'\tcmd\r\n", csvRow("=1+2", "+1", "-1", "@SUM(A1)", "\tcmd"));
+        assertEquals("\"'=A1,B1\"\r\n", csvRow("=A1,B1"));
+    }
+
+    @Test
+    void csvWritesNumbersAndEmptyValuesAsTheyAre() throws IOException {
+        assertEquals("-5,,\r\n", csvRow(-5L, null, ""));
+    }
+
+    private static String csvRow(Object... values) throws IOException {
+        StringWriter out = new StringWriter();
+        ExportWriter writer = ExportWriter.create(ExportWriter.CSV, out);
+        writer.row(values);
+        writer.flush();
+        return out.toString();
+    }
+}
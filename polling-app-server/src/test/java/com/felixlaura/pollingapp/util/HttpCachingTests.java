@@ -0,0 +1,86 @@
+package com.felixlaura.pollingapp.util;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+class HttpCachingTests {
+
+    //The Jackson converters in the order WebMvcConfig leaves them
+    private final MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new ProbeController())
+            .setMessageConverters(
+                    new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build()),
+                    new MappingJackson2CborHttpMessageConverter(Jackson2ObjectMapperBuilder.json().factory(new CBORFactory()).build()),
+                    new MappingJackson2SmileHttpMessageConverter(Jackson2ObjectMapperBuilder.json().factory(new SmileFactory()).build()))
+            .build();
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "*/*",
+            "application/json",
+            "application/cbor",
+            "application/x-jackson-smile",
+            "application/*",
+            "*/*, application/cbor",
+            "application/cbor;q=0.5, application/json",
+            "application/json;q=0.5, application/cbor",
+            "application/x-jackson-smile, application/cbor;q=0.9",
+            "text/html, application/xhtml+xml, */*;q=0.8",
+            "application/problem+json, application/cbor;q=0.1"
+    })
+    void representationIsTheOneSpringMvcNegotiates(String accept) throws Exception {
+        MvcResult result = mockMvc.perform(get("/probe").header(HttpHeaders.ACCEPT, accept)).andReturn();
+        MediaType negotiated = MediaType.parseMediaType(result.getResponse().getContentType());
+
+        String expected = negotiated.equalsTypeAndSubtype(MediaType.APPLICATION_CBOR) ? "cbor"
+                : negotiated.getSubtype().equals("x-jackson-smile") ? "smile" : "json";
+        assertEquals(expected, HttpCaching.representation(accept), "Accept: " + accept);
+    }
+
+    @Test
+    void unparseableAcceptSharesTheJsonRepresentation() {
+        assertEquals("json", HttpCaching.representation("not a media type;;"));
+        assertEquals("json", HttpCaching.representation(null));
+    }
+
+    @Test
+    void etagsOfOtherRepresentationsDoNotMatch() {
+        String json = HttpCaching.etag("poll-1", 42, null, "application/json");
+        String cbor = HttpCaching.etag("poll-1", 42, null, "application/cbor");
+
+        assertNotEquals(json, cbor);
+        assertTrue(HttpCaching.matches(json, HttpCaching.etag("poll-1", 42, null, "*/*")));
+        assertFalse(HttpCaching.matches(json, cbor));
+        assertTrue(HttpCaching.matches("W/" + cbor + ", " + json, cbor));
+    }
+
+    @RestController
+    static class ProbeController {
+        @GetMapping("/probe")
+        Map<String, Object> probe() {
+            return Map.of("id", 1);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.felixlaura.pollingapp.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of counting a ranked-choice poll of 200k random ballots. incrementalAdd is InstantRunoff.add per
+ * ballot, recounts included, fullRecount is one naive runoff over every ballot, what reading the results
+ * cost before the rounds were kept:
+ *   ./mvnw -Pbenchmarks test -DskipTests -Djmh.args="InstantRunoffBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstantRunoffBenchmark {
+
+    private static final int BALLOTS = 200_000;
+
+    @Param({"6"})
+    private int candidates;
+
+    private long[] ballots;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(48);
+        ballots = new long[BALLOTS];
+        for (int i = 0; i < BALLOTS; i++) {
+            ballots[i] = InstantRunoffTests.randomRanking(random, candidates);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BALLOTS)
+    public InstantRunoff incrementalAdd() {
+        InstantRunoff runoff = new InstantRunoff(candidates);
+        for (long ballot : ballots) {
+            runoff.add(ballot);
+        }
+        return runoff;
+    }
+
+    @Benchmark
+    public NaiveRunoff fullRecount() {
+        return new NaiveRunoff(candidates, ballots, ballots.length);
+    }
+}
@@ -0,0 +1,103 @@
+package com.felixlaura.pollingapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class InstantRunoffTests {
+
+    @Test
+    void packsRankingsFirstPreferenceLowest() {
+        assertEquals(0x132L, InstantRunoff.rankingOf(new int[]{1, 2, 0}));
+        assertEquals(0L, InstantRunoff.rankingOf(new int[0]));
+    }
+
+    @Test
+    void majorityOfFirstPreferencesWinsInTheFirstRound() {
+        InstantRunoff runoff = new InstantRunoff(3);
+        runoff.add(InstantRunoff.rankingOf(new int[]{0}));
+        runoff.add(InstantRunoff.rankingOf(new int[]{0, 1}));
+        runoff.add(InstantRunoff.rankingOf(new int[]{2, 1}));
+        assertEquals(0, runoff.getWinner());
+        assertEquals(1, runoff.getRounds());
+    }
+
+    @Test
+    void transfersVotesOfTheEliminatedCandidate() {
+        InstantRunoff runoff = new InstantRunoff(3);
+        runoff.add(InstantRunoff.rankingOf(new int[]{0}));
+        runoff.add(InstantRunoff.rankingOf(new int[]{0}));
+        runoff.add(InstantRunoff.rankingOf(new int[]{1}));
+        runoff.add(InstantRunoff.rankingOf(new int[]{1}));
+        runoff.add(InstantRunoff.rankingOf(new int[]{2, 1}));
+
+        assertEquals(2, runoff.getRounds());
+        assertEquals(2, runoff.getEliminated(0));
+        assertEquals(3, runoff.getVotes(1, 1));
+        assertEquals(1, runoff.getWinner());
+    }
+
+    @Test
+    void everyBallotExhaustedLeavesNoWinner() {
+        InstantRunoff runoff = new InstantRunoff(2);
+        assertEquals(-1, runoff.getWinner());
+        runoff.add(0L);
+        assertEquals(-1, runoff.getWinner());
+        assertEquals(1, runoff.getExhausted(0));
+    }
+
+    @Test
+    void incrementalCountMatchesAFullRecountAfterEveryBallot() {
+        Random random = new Random(48);
+        for (int trial = 0; trial < 300; trial++) {
+            int candidates = 1 + random.nextInt(8);
+            int ballots = random.nextInt(200);
+            //A few distinct rankings per trial make ties and changing outcomes frequent
+            long[] pool = new long[1 + random.nextInt(12)];
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = randomRanking(random, candidates);
+            }
+
+            InstantRunoff runoff = new InstantRunoff(candidates);
+            long[] cast = new long[ballots];
+            for (int i = 0; i < ballots; i++) {
+                cast[i] = random.nextInt(4) == 0 ? randomRanking(random, candidates) : pool[random.nextInt(pool.length)];
+                runoff.add(cast[i]);
+                assertMatches(new NaiveRunoff(candidates, cast, i + 1), runoff, candidates,
+                        "trial " + trial + ", ballot " + i);
+            }
+        }
+    }
+
+    private static void assertMatches(NaiveRunoff expected, InstantRunoff actual, int candidates, String context) {
+        assertEquals(expected.winner, actual.getWinner(), context);
+        assertEquals(expected.votes.size(), actual.getRounds(), context);
+        for (int round = 0; round < actual.getRounds(); round++) {
+            long[] votes = new long[candidates];
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                votes[candidate] = actual.getVotes(round, candidate);
+            }
+            assertArrayEquals(expected.votes.get(round), votes, context + ", round " + round);
+            assertEquals(expected.exhausted.get(round), actual.getExhausted(round), context + ", round " + round);
+            int eliminated = round < expected.eliminated.size() ? expected.eliminated.get(round) : -1;
+            assertEquals(eliminated, actual.getEliminated(round), context + ", round " + round);
+        }
+    }
+
+    //A random prefix of a random order of the candidates, empty rankings included
+    static long randomRanking(Random random, int candidates) {
+        int[] order = new int[candidates];
+        for (int i = 0; i < candidates; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        int length = random.nextInt(candidates + 1);
+        int[] ranked = new int[length];
+        System.arraycopy(order, 0, ranked, 0, length);
+        return InstantRunoff.rankingOf(ranked);
+    }
+}
@@ -0,0 +1,76 @@
+package com.felixlaura.pollingapp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instant-runoff count from scratch, one ballot at a time, with the rules InstantRunoff documents.
+ * The reference InstantRunoffTests compares against, and the full recount InstantRunoffBenchmark measures.
+ */
+class NaiveRunoff {
+
+    final List<long[]> votes = new ArrayList<>();
+    final List<Long> exhausted = new ArrayList<>();
+    final List<Integer> eliminated = new ArrayList<>();
+    int winner = -1;
+
+    NaiveRunoff(int candidates, long[] ballots, int count) {
+        if (count == 0) {
+            return;
+        }
+        boolean[] out = new boolean[candidates];
+        while (votes.size() < candidates) {
+            long[] roundVotes = new long[candidates];
+            long roundExhausted = 0;
+            for (int i = 0; i < count; i++) {
+                int top = -1;
+                for (long ranking = ballots[i]; ranking != 0; ranking >>>= 4) {
+                    int candidate = (int) (ranking & 0xF) - 1;
+                    if (!out[candidate]) {
+                        top = candidate;
+                        break;
+                    }
+                }
+                if (top < 0) {
+                    roundExhausted++;
+                } else {
+                    roundVotes[top]++;
+                }
+            }
+            votes.add(roundVotes);
+            exhausted.add(roundExhausted);
+
+            long active = count - roundExhausted;
+            if (active == 0) {
+                return;
+            }
+            List<Integer> continuing = new ArrayList<>();
+            for (int candidate = 0; candidate < candidates; candidate++) {
+                if (!out[candidate]) {
+                    continuing.add(candidate);
+                }
+            }
+            for (int candidate : continuing) {
+                if (roundVotes[candidate] * 2 > active) {
+                    winner = candidate;
+                    return;
+                }
+            }
+            if (continuing.size() == 1) {
+                winner = continuing.get(0);
+                return;
+            }
+            //Fewest votes, then fewest first preferences, then the later position
+            long[] first = votes.get(0);
+            int weakest = continuing.get(0);
+            for (int candidate : continuing) {
+                if (roundVotes[candidate] < roundVotes[weakest]
+                        || (roundVotes[candidate] == roundVotes[weakest] && first[candidate] <= first[weakest])) {
+                    weakest = candidate;
+                }
+            }
+            out[weakest] = true;
+            eliminated.add(weakest);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.felixlaura.pollingapp.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.felixlaura.pollingapp.payload.PagedResponse;
+import com.felixlaura.pollingapp.payload.PollResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of a 50 poll page in each representation WebMvcConfig registers, with ObjectMappers built
+ * the way the application builds them. The size of the page in bytes is printed once per format at setup:
+ *   ./mvnw -Pbenchmarks test -DskipTests -Djmh.args="PollPageSerializationBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PollPageSerializationBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+    private PagedResponse<PollResponse> page;
+
+    @Setup
+    public void setUp() throws IOException {
+        //spring.jackson.* settings of application.properties
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .timeZone(TimeZone.getTimeZone("UTC"));
+        switch (format) {
+            case "cbor":
+                builder.factory(new CBORFactory());
+                break;
+            case "smile":
+                builder.factory(new SmileFactory());
+                break;
+            default:
+                break;
+        }
+        objectMapper = builder.build();
+
+        PollPageAllocationBenchmark allocation = new PollPageAllocationBenchmark();
+        allocation.setUp();
+        List<PollResponse> polls = allocation.primitiveMaps();
+        page = new PagedResponse<>(polls, 0, polls.size(), 500, 10, false);
+
+        System.out.println(format + ": " + objectMapper.writeValueAsBytes(page).length + " bytes per page");
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+}
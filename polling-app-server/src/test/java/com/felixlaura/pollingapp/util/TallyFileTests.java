@@ -0,0 +1,182 @@
+package com.felixlaura.pollingapp.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Every table starts at the minimum of 1024 slots, so the slot a choice id hashes to is mix(id) & 1023.
+ */
+class TallyFileTests {
+
+    private static final int CAPACITY = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void probesWrapAroundTheEndOfTheTable() throws IOException {
+        //Four choices hashing to the last slot take slots 1023, 0, 1 and 2, the fifth hashes to slot 0
+        List<Long> last = choicesHashingTo(CAPACITY - 1, 4);
+        long first = choicesHashingTo(0, 1).get(0);
+        try (TallyFile tally = TallyFile.open(directory.resolve("tally"), CAPACITY)) {
+            for (int i = 0; i < last.size(); i++) {
+                tally.add(last.get(i), i % 2 == 0 ? 1 : 2, 10 + i);
+            }
+            tally.add(first, 3, 99);
+
+            for (int i = 0; i < last.size(); i++) {
+                assertEquals(10 + i, tally.get(last.get(i)));
+            }
+            assertEquals(99, tally.get(first));
+
+            //Removing choices before the wrap shifts the ones after it back across the end of the table
+            assertEquals(2, tally.removePoll(1));
+            assertEquals(0, tally.get(last.get(0)));
+            assertEquals(0, tally.get(last.get(2)));
+            assertEquals(11, tally.get(last.get(1)));
+            assertEquals(13, tally.get(last.get(3)));
+            assertEquals(99, tally.get(first));
+            assertEquals(3, tally.size());
+
+            tally.add(last.get(3), 2, 1);
+            assertEquals(14, tally.get(last.get(3)));
+            assertEquals(3, tally.size());
+        }
+    }
+
+    @Test
+    void matchesAMapUnderRandomAddsAndRemovals() throws IOException {
+        Random random = new Random(46);
+        Map<Long, Long> expected = new HashMap<>();
+        Map<Long, Long> pollOf = new HashMap<>();
+        try (TallyFile tally = TallyFile.open(directory.resolve("tally"), CAPACITY)) {
+            for (int step = 0; step < 20_000; step++) {
+                if (random.nextInt(50) == 0) {
+                    long pollId = 1 + random.nextInt(40);
+                    int removed = 0;
+                    for (Long choiceId : new ArrayList<>(pollOf.keySet())) {
+                        if (pollOf.get(choiceId) == pollId) {
+                            pollOf.remove(choiceId);
+                            expected.remove(choiceId);
+                            removed++;
+                        }
+                    }
+                    assertEquals(removed, tally.removePoll(pollId));
+                } else {
+                    //Few enough choices to stay below the load factor, so the table keeps its 1024 slots
+                    long choiceId = 1 + random.nextInt(600);
+                    long pollId = pollOf.computeIfAbsent(choiceId, id -> 1 + id % 40);
+                    tally.add(choiceId, pollId, 1);
+                    expected.merge(choiceId, 1L, Long::sum);
+                }
+                assertEquals(expected.size(), tally.size());
+            }
+            for (long choiceId = 1; choiceId <= 600; choiceId++) {
+                assertEquals(expected.getOrDefault(choiceId, 0L), tally.get(choiceId));
+            }
+        }
+    }
+
+    @Test
+    void reopensWithTheCheckpointedCounts() throws IOException {
+        Path path = directory.resolve("tally");
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            tally.beginUpdate();
+            tally.add(11, 1, 5);
+            tally.add(12, 1, 7);
+            tally.checkpoint(1234);
+        }
+
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            assertFalse(tally.isDirty());
+            assertEquals(1234, tally.getHighWater());
+            assertEquals(2, tally.size());
+            assertEquals(5, tally.get(11));
+            assertEquals(7, tally.get(12));
+        }
+    }
+
+    @Test
+    void updatesWithoutCheckpointLeaveTheFileDirty() throws IOException {
+        Path path = directory.resolve("tally");
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            tally.beginUpdate();
+            tally.add(11, 1, 5);
+            tally.checkpoint(100);
+            tally.beginUpdate();
+            tally.add(11, 1, 1);
+        }
+
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            assertTrue(tally.isDirty());
+            assertEquals(100, tally.getHighWater());
+        }
+    }
+
+    @Test
+    void growsPastItsCapacityKeepingCountsAndHeader() throws IOException {
+        Path path = directory.resolve("tally");
+        int choices = CAPACITY * 2;
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            tally.beginUpdate();
+            tally.checkpoint(500);
+            tally.beginUpdate();
+            for (long choiceId = 1; choiceId <= choices; choiceId++) {
+                tally.add(choiceId, choiceId % 10, choiceId);
+            }
+            assertEquals(choices, tally.size());
+            assertTrue(tally.isDirty());
+            assertEquals(500, tally.getHighWater());
+            for (long choiceId = 1; choiceId <= choices; choiceId++) {
+                assertEquals(choiceId, tally.get(choiceId));
+            }
+            tally.checkpoint(900);
+        }
+        //Grown twice, to 4096 slots, and the temporary file was moved over the table
+        assertEquals(64 + 4096 * 24, Files.size(path));
+        assertFalse(Files.exists(directory.resolve("tally.grow")));
+
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            assertEquals(choices, tally.size());
+            assertEquals(900, tally.getHighWater());
+            assertEquals(choices / 10 + 1, tally.removePoll(3));
+            assertEquals(0, tally.get(3));
+            assertEquals(4, tally.get(4));
+        }
+    }
+
+    @Test
+    void replacesAFileThatIsNotATable() throws IOException {
+        Path path = directory.resolve("tally");
+        Files.write(path, new byte[100]);
+        try (TallyFile tally = TallyFile.open(path, CAPACITY)) {
+            assertEquals(0, tally.size());
+            assertFalse(tally.isDirty());
+            tally.add(1, 1, 1);
+            assertEquals(1, tally.get(1));
+        }
+    }
+
+    private static List<Long> choicesHashingTo(int slot, int count) {
+        List<Long> choices = new ArrayList<>(count);
+        for (long choiceId = 1; choices.size() < count; choiceId++) {
+            if ((LongLongMap.mix(choiceId) & (CAPACITY - 1)) == slot) {
+                choices.add(choiceId);
+            }
+        }
+        return choices;
+    }
+}
@@ -0,0 +1,139 @@
+package com.felixlaura.pollingapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Drives the wheel with one millisecond ticks, so a deadline in ms is also its tick.
+ */
+class TimingWheelTests {
+
+    private static final int KIND = 0;
+
+    @Test
+    void firesOnItsTickAndNotBefore() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        wheel.schedule(10, 1, KIND);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(9, (id, kind) -> fired.add(id));
+        assertTrue(fired.isEmpty());
+        wheel.advance(10, (id, kind) -> fired.add(id));
+        assertEquals(List.of(1L), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void timersOfEveryLevelCascadeDownToTheirTick() {
+        long start = 1_000;
+        TimingWheel wheel = new TimingWheel(1, start);
+        //Level 1 to level 4 deadlines, some right on a level boundary, some past it
+        long[] delays = {63, 64, 65, 4_095, 4_096, 4_097, 262_143, 262_144, 262_200, 16_777_216, 16_777_300};
+        for (int i = 0; i < delays.length; i++) {
+            wheel.schedule(start + delays[i], i, KIND);
+        }
+
+        Map<Long, Long> firedAt = new HashMap<>();
+        long last = start + delays[delays.length - 1];
+        for (long now = start + 1; now <= last; now++) {
+            long tick = now;
+            wheel.advance(now, (id, kind) -> firedAt.put(id, tick));
+        }
+
+        assertEquals(delays.length, firedAt.size());
+        for (int i = 0; i < delays.length; i++) {
+            assertEquals(start + delays[i], firedAt.get((long) i), "Deadline +" + delays[i]);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void oneAdvanceFiresEverythingDueInDeadlineOrder() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        wheel.schedule(5_000, 3, KIND);
+        wheel.schedule(70, 2, KIND);
+        wheel.schedule(3, 1, KIND);
+        wheel.schedule(9_000, 4, KIND);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(5_000, (id, kind) -> fired.add(id));
+        assertEquals(List.of(1L, 2L, 3L), fired);
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void passedDeadlinesFireOnTheNextTick() {
+        TimingWheel wheel = new TimingWheel(1, 100);
+        wheel.schedule(50, 1, KIND);
+
+        List<Long> fired = new ArrayList<>();
+        wheel.advance(100, (id, kind) -> fired.add(id));
+        assertTrue(fired.isEmpty());
+        wheel.advance(101, (id, kind) -> fired.add(id));
+        assertEquals(List.of(1L), fired);
+    }
+
+    @Test
+    void sameIdAndKindIsScheduledOnce() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        assertTrue(wheel.schedule(100, 1, KIND));
+        assertFalse(wheel.schedule(100, 1, KIND));
+        assertTrue(wheel.schedule(50, 1, 1));
+        assertEquals(2, wheel.size());
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(1_000, (id, kind) -> fired.add(id + ":" + kind));
+        assertEquals(List.of("1:1", "1:0"), fired);
+    }
+
+    @Test
+    void reschedulingReplacesThePendingDeadline() {
+        TimingWheel wheel = new TimingWheel(1, 0);
+        wheel.schedule(5_000, 1, KIND);
+        wheel.schedule(200, 1, KIND);
+        assertEquals(1, wheel.size());
+
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 1; now <= 10_000; now++) {
+            long tick = now;
+            wheel.advance(now, (id, kind) -> firedAt.add(tick));
+        }
+        assertEquals(List.of(200L), firedAt);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void randomDeadlinesFireOnceWhenReached() {
+        Random random = new Random(42);
+        TimingWheel wheel = new TimingWheel(1, 0);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 20_000; id++) {
+            long deadline = 1 + (long) (Math.pow(random.nextDouble(), 4) * 20_000_000);
+            deadlines.put(id, deadline);
+            wheel.schedule(deadline, id, KIND);
+        }
+
+        Map<Long, Long> fired = new HashMap<>();
+        long now = 0;
+        while (fired.size() < deadlines.size()) {
+            long from = now;
+            now += 1 + random.nextInt(5_000);
+            long to = now;
+            wheel.advance(now, (id, kind) -> {
+                long deadline = deadlines.get(id);
+                assertTrue(deadline > from && deadline <= to, "Poll " + id + " due at " + deadline + " fired in (" + from + ", " + to + "]");
+                assertEquals(null, fired.put(id, to), "Fired twice: " + id);
+            });
+        }
+        assertEquals(0, wheel.size());
+    }
+}